@@ -0,0 +1,90 @@
+package com.capmation.challenge1;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training run for the class-data-sharing archive of the fast-start layout ({@code fastStart} in
+ * {@code build.gradle}), run from the layout's directory. Starts {@code application.jar} in a JVM
+ * of its own in AOT mode, the way it is started later, sends it one request so the classes that
+ * serve it are archived too, and stops it, at which point that JVM writes
+ * {@code application.jsa}. The application is started with {@code -jar} because the archive is
+ * only used with the class path it was recorded with; this class is not part of it.
+ * <p>
+ * The request is {@code GET training.path} with the credentials in {@code training.user} and
+ * {@code training.password} (system properties); any status other than 200 fails the run.
+ * Arguments go to the application. Stopping relies on the JVM running its shutdown on
+ * {@link Process#destroy()}, which is the case on Linux and macOS.
+ */
+public final class TrainingRun {
+
+	private static final String ARCHIVE = "application.jsa";
+	private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+	private TrainingRun() {
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Files.deleteIfExists(Path.of(ARCHIVE));
+		int port = freePort();
+		List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+				"-XX:ArchiveClassesAtExit=" + ARCHIVE, "-Xlog:cds=error", "-Dspring.aot.enabled=true",
+				"-jar", "application.jar", "--server.port=" + port));
+		command.addAll(List.of(args));
+		String credentials = System.getProperty("training.user") + ":" + System.getProperty("training.password");
+		HttpRequest request = HttpRequest.newBuilder(
+				URI.create("http://localhost:" + port + System.getProperty("training.path")))
+				.header("Authorization",
+						"Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)))
+				.build();
+
+		Process application = new ProcessBuilder(command).inheritIO().start();
+		try {
+			int status = firstResponse(application, request);
+			if (status != 200) {
+				throw new IllegalStateException("Training request answered " + status);
+			}
+		} finally {
+			application.destroy();
+			if (!application.waitFor(1, TimeUnit.MINUTES)) {
+				application.destroyForcibly();
+			}
+		}
+		if (!Files.exists(Path.of(ARCHIVE))) {
+			throw new IllegalStateException("The application exited without writing " + ARCHIVE);
+		}
+	}
+
+	private static int firstResponse(Process application, HttpRequest request) throws InterruptedException {
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+		while (System.currentTimeMillis() < deadline) {
+			if (!application.isAlive()) {
+				throw new IllegalStateException("Application exited with " + application.exitValue());
+			}
+			try {
+				return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+			} catch (IOException notListeningYet) {
+				Thread.sleep(50);
+			}
+		}
+		throw new IllegalStateException("Application did not answer within " + STARTUP_TIMEOUT_MILLIS + "ms");
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.capmation.challenge1;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application the way the benchmarks need it: on a random port, with the test
+ * schema and data from the test classpath and without request logging noise.
+ */
+final class BenchmarkApplication {
+
+	private BenchmarkApplication() {
+	}
+
+	static ConfigurableApplicationContext start(String... properties) {
+		return builder(properties).run();
+	}
+
+	static SpringApplicationBuilder builder(String... properties) {
+		return new SpringApplicationBuilder(SpringbootCodeChallenge1Application.class)
+				.properties("server.port=0", "logging.level.root=WARN")
+				.properties(properties);
+	}
+}
@@ -0,0 +1,93 @@
+package com.capmation.challenge1;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * The whole {@link BankAccountController} request flow: security filters with HTTP Basic,
+ * JSON binding, the repository or service call and the JSON response. MockMvc drives the
+ * dispatcher directly, so socket and Tomcat overhead are left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ControllerBenchmark {
+
+	private ConfigurableApplicationContext context;
+	private MockMvc mockMvc;
+	private RequestBuilder findById;
+	private RequestBuilder deposit;
+	private RequestBuilder withdrawal;
+	private RequestBuilder transfer;
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start();
+		mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).apply(springSecurity()).build();
+
+		BankAccountRepository repository = context.getBean(BankAccountRepository.class);
+		// Enough money that withdrawals and transfers never run out during a run
+		Long source = repository.save(new BankAccount(null, Money.MAX_CENTS / 4, "SAVINGS", "user1")).id();
+		Long destination = repository.save(new BankAccount(null, 0L, "CHECKING", "user2")).id();
+
+		findById = get("/bankaccounts/{id}", source).with(httpBasic("user1", "user1$$pwd"));
+		deposit = patch("/bankaccounts/{id}/deposit", destination).with(httpBasic("user2", "user2$$pwd"))
+				.contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 1.00}");
+		withdrawal = patch("/bankaccounts/{id}/withdrawal", source).with(httpBasic("user1", "user1$$pwd"))
+				.contentType(MediaType.APPLICATION_JSON).content("{\"amount\": 1.00}");
+		transfer = patch("/bankaccounts/{id}/tranference", source).with(httpBasic("user1", "user1$$pwd"))
+				.contentType(MediaType.APPLICATION_JSON).content("{\"destinationId\": " + destination + ", \"amount\": 1.00}");
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public int findById() throws Exception {
+		return perform(findById);
+	}
+
+	@Benchmark
+	public int deposit() throws Exception {
+		return perform(deposit);
+	}
+
+	@Benchmark
+	public int withdrawal() throws Exception {
+		return perform(withdrawal);
+	}
+
+	@Benchmark
+	public int transfer() throws Exception {
+		return perform(transfer);
+	}
+
+	private int perform(RequestBuilder request) throws Exception {
+		int status = mockMvc.perform(request).andReturn().getResponse().getStatus();
+		if (status != 200) {
+			throw new IllegalStateException("Unexpected status " + status);
+		}
+		return status;
+	}
+}
@@ -0,0 +1,88 @@
+package com.capmation.challenge1;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Accounts created per second by {@link BankAccountImporter} from a CSV body of {@value #ROWS}
+ * lines, with different chunk sizes, next to creating the same accounts one
+ * {@link OwnerBalances#save} at a time as {@code POST /bankaccounts} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ImportBenchmark {
+
+	private static final int ROWS = 10_000;
+	private static final String OWNER = "import-bench";
+
+	@Param({ "100", "1000" })
+	public int chunkSize;
+
+	private ConfigurableApplicationContext context;
+	private BankAccountImporter importer;
+	private OwnerBalances ownerBalances;
+	private JdbcTemplate jdbcTemplate;
+	private byte[] csv;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = BenchmarkApplication.start("bankaccounts.import.chunk-size=" + chunkSize);
+		importer = context.getBean(BankAccountImporter.class);
+		ownerBalances = context.getBean(OwnerBalances.class);
+		jdbcTemplate = context.getBean(JdbcTemplate.class);
+		StringBuilder lines = new StringBuilder("amount,accountType,owner\n");
+		for (int i = 0; i < ROWS; i++) {
+			lines.append(i % 1000).append(".25,").append(i % 2 == 0 ? "SAVINGS" : "CHECKING").append(',')
+					.append(OWNER).append(i % 10).append('\n');
+		}
+		csv = lines.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Keeps the table from growing across iterations.
+	 */
+	@TearDown(Level.Iteration)
+	public void deleteImported() {
+		jdbcTemplate.update("DELETE FROM bank_account WHERE owner LIKE ?", OWNER + "%");
+		jdbcTemplate.update("DELETE FROM owner_balance WHERE owner LIKE ?", OWNER + "%");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public long importCsv() throws IOException {
+		return importer.importAccounts(new ByteArrayInputStream(csv), BankAccountImporter.Format.CSV).created();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public long saveOneByOne() {
+		long created = 0;
+		for (int i = 0; i < ROWS; i++) {
+			ownerBalances.save(new BankAccount(null, (i % 1000) * 100L + 25, i % 2 == 0 ? "SAVINGS" : "CHECKING", OWNER + (i % 10)));
+			created++;
+		}
+		return created;
+	}
+}
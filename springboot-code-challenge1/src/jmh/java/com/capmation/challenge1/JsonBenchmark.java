@@ -0,0 +1,112 @@
+package com.capmation.challenge1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * Jackson (de)serialization of the request and response bodies, with a mapper configured like
+ * the one Spring Boot gives the controllers, in each wire format {@link JacksonConfig} offers and
+ * with or without the {@link BlackbirdModule} accessors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonBenchmark {
+
+	@Param({ "json", "cbor", "smile" })
+	public String format;
+
+	@Param({ "false", "true" })
+	public boolean blackbird;
+
+	private ObjectWriter accountWriter;
+	private ObjectWriter pageWriter;
+	private ObjectReader accountReader;
+	private ObjectReader depositReader;
+	private ObjectReader withdrawalReader;
+	private ObjectReader transferenceReader;
+
+	private BankAccount account;
+	private List<BankAccount> page;
+	private byte[] accountJson;
+	private byte[] depositJson;
+	private byte[] withdrawalJson;
+	private byte[] transferenceJson;
+
+	@Setup
+	public void setUp() throws IOException {
+		Jackson2ObjectMapperBuilder builder = switch (format) {
+			case "cbor" -> Jackson2ObjectMapperBuilder.cbor();
+			case "smile" -> Jackson2ObjectMapperBuilder.smile();
+			default -> Jackson2ObjectMapperBuilder.json();
+		};
+		if (blackbird) {
+			builder.modulesToInstall(new BlackbirdModule());
+		}
+		ObjectMapper mapper = builder.build();
+		accountWriter = mapper.writerFor(BankAccount.class);
+		pageWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, BankAccount.class));
+		accountReader = mapper.readerFor(BankAccount.class);
+		depositReader = mapper.readerFor(DepositRecord.class);
+		withdrawalReader = mapper.readerFor(WithdrawalRecord.class);
+		transferenceReader = mapper.readerFor(TransferenceRecord.class);
+
+		account = new BankAccount(1004L, 470050L, "SAVINGS", "user2");
+		page = new ArrayList<>();
+		for (long i = 0; i < 20; i++) {
+			page.add(new BankAccount(1000L + i, i * 12345L, "CHECKING", "user1"));
+		}
+		accountJson = accountWriter.writeValueAsBytes(account);
+		depositJson = mapper.writeValueAsBytes(new DepositRecord(1002L, 30000L, new Date()));
+		withdrawalJson = mapper.writeValueAsBytes(new WithdrawalRecord(1002L, 15000L, new Date()));
+		transferenceJson = mapper.writeValueAsBytes(new TransferenceRecord(1001L, 70000L, new Date()));
+	}
+
+	@Benchmark
+	public byte[] writeBankAccount() throws IOException {
+		return accountWriter.writeValueAsBytes(account);
+	}
+
+	@Benchmark
+	public byte[] writeBankAccountPage() throws IOException {
+		return pageWriter.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public BankAccount readBankAccount() throws IOException {
+		return accountReader.readValue(accountJson);
+	}
+
+	@Benchmark
+	public DepositRecord readDepositRecord() throws IOException {
+		return depositReader.readValue(depositJson);
+	}
+
+	@Benchmark
+	public WithdrawalRecord readWithdrawalRecord() throws IOException {
+		return withdrawalReader.readValue(withdrawalJson);
+	}
+
+	@Benchmark
+	public TransferenceRecord readTransferenceRecord() throws IOException {
+		return transferenceReader.readValue(transferenceJson);
+	}
+}
@@ -0,0 +1,60 @@
+package com.capmation.challenge1;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * HTTP Basic credential verification with the beans from {@link SecurityConfig}: the raw
+ * BCrypt check, and the authentication provider with and without the credential cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PasswordVerificationBenchmark {
+
+	private PasswordEncoder passwordEncoder;
+	private String encodedPassword;
+	private AuthenticationProvider uncached;
+	private AuthenticationProvider cached;
+
+	@Setup
+	public void setUp() {
+		SecurityConfig config = new SecurityConfig();
+		passwordEncoder = config.passwordEncoder();
+		UserDetailsService users = config.testOnlyUsers(passwordEncoder);
+		encodedPassword = users.loadUserByUsername("user1").getPassword();
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		uncached = config.authenticationProvider(users, passwordEncoder, meterRegistry, false, Duration.ofMinutes(5), 10_000);
+		cached = config.authenticationProvider(users, passwordEncoder, meterRegistry, true, Duration.ofMinutes(5), 10_000);
+	}
+
+	@Benchmark
+	public boolean bcryptMatches() {
+		return passwordEncoder.matches("user1$$pwd", encodedPassword);
+	}
+
+	@Benchmark
+	public Authentication authenticateUncached() {
+		return uncached.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user1", "user1$$pwd"));
+	}
+
+	@Benchmark
+	public Authentication authenticateCached() {
+		return cached.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user1", "user1$$pwd"));
+	}
+}
@@ -0,0 +1,64 @@
+package com.capmation.challenge1;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * {@link BankAccountRepository} lookups and single-statement balance updates against the
+ * embedded H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryBenchmark {
+
+	private ConfigurableApplicationContext context;
+	private BankAccountRepository repository;
+	private Long accountId;
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start();
+		repository = context.getBean(BankAccountRepository.class);
+		// Enough money that withdrawals never run out during a run
+		accountId = repository.save(new BankAccount(null, Money.MAX_CENTS / 2, "SAVINGS", "bench")).id();
+		for (int i = 0; i < 100; i++) {
+			repository.save(new BankAccount(null, i * 100L, "CHECKING", "bench"));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public BankAccount findById() {
+		return repository.findById(accountId).orElseThrow();
+	}
+
+	@Benchmark
+	public List<BankAccount> findFirstPageByOwner() {
+		return repository.findFirstPageByOwner("bench", 20);
+	}
+
+	@Benchmark
+	public BankAccount addToBalance() {
+		return repository.addToBalance(accountId, 1L);
+	}
+
+	@Benchmark
+	public BankAccount subtractFromBalance() {
+		return repository.subtractFromBalance(accountId, "bench", 1L);
+	}
+}
@@ -0,0 +1,122 @@
+package com.capmation.challenge1;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from launching a new JVM to the first successful {@code GET /bankaccounts/{id}}, for the
+ * fast-start layout ({@code fastStart} in {@code build.gradle}) started plainly, with the
+ * AOT-generated bean definitions, and with those and the class-data-sharing archive. Every
+ * invocation is a new process; stopping it is not measured. Run with
+ * {@code ./gradlew startupBenchmark}, which builds the layout first; {@code jmh} leaves it out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class StartupBenchmark {
+
+	@Param({ "plain", "aot", "aot-cds" })
+	public String mode;
+
+	private Path directory;
+	private Path sqlDirectory;
+	private HttpClient client;
+	private ProcessBuilder launcher;
+	private HttpRequest findById;
+	private Process process;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		directory = Path.of(System.getProperty("fast-start.dir"));
+		sqlDirectory = Path.of(System.getProperty("fast-start.sql-dir"));
+		if (!Files.exists(directory.resolve("application.jsa"))) {
+			throw new IllegalStateException("No fast-start layout in " + directory + ", run ./gradlew startupBenchmark");
+		}
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(1)).build();
+	}
+
+	@Setup(Level.Invocation)
+	public void prepare() throws IOException {
+		int port = freePort();
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		if (mode.startsWith("aot")) {
+			command.add("-Dspring.aot.enabled=true");
+		}
+		if (mode.endsWith("cds")) {
+			command.add("-XX:SharedArchiveFile=application.jsa");
+		}
+		command.addAll(List.of("-jar", "application.jar", "--server.port=" + port, "--logging.level.root=WARN",
+				"--spring.sql.init.schema-locations=file:" + sqlDirectory.resolve("schema.sql"),
+				"--spring.sql.init.data-locations=file:" + sqlDirectory.resolve("data.sql")));
+		launcher = new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		findById = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/bankaccounts/1001"))
+				.header("Authorization", "Basic "
+						+ Base64.getEncoder().encodeToString("user1:user1$$pwd".getBytes(StandardCharsets.UTF_8)))
+				.build();
+	}
+
+	@TearDown(Level.Invocation)
+	public void stop() throws InterruptedException {
+		if (process != null) {
+			process.destroy();
+			if (!process.waitFor(30, TimeUnit.SECONDS)) {
+				process.destroyForcibly().waitFor();
+			}
+			process = null;
+		}
+	}
+
+	@Benchmark
+	public int firstResponse() throws IOException, InterruptedException {
+		process = launcher.start();
+		while (true) {
+			if (!process.isAlive()) {
+				throw new IllegalStateException("Application exited with " + process.exitValue());
+			}
+			try {
+				int status = client.send(findById, HttpResponse.BodyHandlers.discarding()).statusCode();
+				if (status != 200) {
+					throw new IllegalStateException("Unexpected status " + status);
+				}
+				return status;
+			} catch (IOException notListeningYet) {
+				Thread.sleep(5);
+			}
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
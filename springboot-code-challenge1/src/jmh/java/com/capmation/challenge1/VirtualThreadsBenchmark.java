@@ -0,0 +1,151 @@
+package com.capmation.challenge1;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * {@code GET /bankaccounts/{id}} over HTTP with {@value #CONCURRENCY} requests in flight and a
+ * database that takes {@code dbLatencyMillis} to answer each statement, served by Tomcat's
+ * platform thread pool ({@code server.tomcat.threads.max}, 200 by default) or by one virtual
+ * thread per request ({@link VirtualThreadsConfig}). The account cache is off so every request
+ * reaches the database, and the connection pool is as large as the concurrency, so the request
+ * threads are the only limit left. Reports requests per second.
+ * <p>
+ * The virtual thread runs need Java 21 or later; on older JVMs they fail at startup and JMH moves
+ * on to the next configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class VirtualThreadsBenchmark {
+
+	private static final int CONCURRENCY = 1000;
+
+	@Param({ "platform", "virtual" })
+	public String threads;
+
+	@Param({ "20" })
+	public long dbLatencyMillis;
+
+	private ConfigurableApplicationContext context;
+	private HttpClient client;
+	private HttpRequest findById;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		long latency = dbLatencyMillis;
+		context = BenchmarkApplication.builder(
+				"bankaccounts.virtual-threads.enabled=" + threads.equals("virtual"),
+				"bankaccounts.cache.max-size=0",
+				"spring.datasource.hikari.maximum-pool-size=" + CONCURRENCY,
+				"server.tomcat.max-connections=" + 2 * CONCURRENCY)
+				.initializers(context -> context.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+					@Override
+					public Object postProcessAfterInitialization(Object bean, String beanName) {
+						return bean instanceof DataSource dataSource ? slow(dataSource, latency) : bean;
+					}
+				}))
+				.run();
+		int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		Long id = context.getBean(BankAccountRepository.class)
+				.save(new BankAccount(null, 100_000L, "SAVINGS", "user1")).id();
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		findById = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/bankaccounts/" + id))
+				.header("Authorization", "Basic "
+						+ Base64.getEncoder().encodeToString("user1:user1$$pwd".getBytes(StandardCharsets.UTF_8)))
+				.build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CONCURRENCY)
+	public int findById() {
+		List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(CONCURRENCY);
+		for (int i = 0; i < CONCURRENCY; i++) {
+			responses.add(client.sendAsync(findById, HttpResponse.BodyHandlers.discarding()));
+		}
+		int ok = 0;
+		for (CompletableFuture<HttpResponse<Void>> response : responses) {
+			int status = response.join().statusCode();
+			if (status != 200) {
+				throw new IllegalStateException("Unexpected status " + status);
+			}
+			ok++;
+		}
+		return ok;
+	}
+
+	/**
+	 * Adds {@code latencyMillis} before every statement the pooled connections execute, as a
+	 * round trip to a remote database would.
+	 */
+	private static DataSource slow(DataSource dataSource, long latencyMillis) {
+		return proxy(DataSource.class, dataSource, 0, (method, connection) -> method.getName().equals("getConnection")
+				? proxy(Connection.class, connection, 0, (connectionMethod, statement) -> statement instanceof Statement
+						? proxy(connectionMethod.getReturnType(), statement, latencyMillis, (statementMethod, result) -> result)
+						: statement)
+				: connection);
+	}
+
+	/**
+	 * Delegates to {@code target}, sleeping first in any {@code execute*} method when
+	 * {@code latencyMillis} is set, and passes every result through {@code wrapResult}.
+	 */
+	private static <T> T proxy(Class<T> type, Object target, long latencyMillis, ResultWrapper wrapResult) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			if (latencyMillis > 0 && method.getName().startsWith("execute")) {
+				Thread.sleep(latencyMillis);
+			}
+			try {
+				return wrapResult.wrap(method, method.invoke(target, args));
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		};
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	@FunctionalInterface
+	private interface ResultWrapper {
+		Object wrap(Method method, Object result);
+	}
+}
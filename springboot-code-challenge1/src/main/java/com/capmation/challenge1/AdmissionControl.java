@@ -0,0 +1,216 @@
+package com.capmation.challenge1;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Decides whether a request may go on, before it is authenticated or reaches the database. Reads
+ * ({@code GET}/{@code HEAD}) and mutations have separate budgets, each made of:
+ * <ul>
+ * <li>a token bucket per principal, refilled at {@code rate} per second up to {@code burst}
+ * tokens, so one client cannot take everybody's share;</li>
+ * <li>a cap on requests in progress across all principals, {@code maxConcurrent}. A request that
+ * finds it full may wait up to {@code queueTimeout} for a slot.</li>
+ * </ul>
+ * A request over either limit is refused with the number of seconds after which trying again
+ * makes sense. The principal is the user name of the {@code Authorization: Basic} header together
+ * with the client address, or the address alone for requests without one. The name is not
+ * verified at this point, so it never decides the bucket on its own: a client claiming somebody
+ * else's name only spends a bucket of its own address.
+ * <p>
+ * Counts shed requests ({@code bankaccounts.admission.shed}, by budget and reason), times the
+ * ones that had to wait for a slot ({@code bankaccounts.admission.queued}) and reports the
+ * requests in progress ({@code bankaccounts.admission.in-flight}).
+ */
+public class AdmissionControl {
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final Map<Budget, BudgetState> budgets = new EnumMap<>(Budget.class);
+	private final Duration queueTimeout;
+
+	public AdmissionControl(Limits reads, Limits mutations, Duration queueTimeout, long maxPrincipals,
+			MeterRegistry meterRegistry) {
+		this.queueTimeout = queueTimeout;
+		budgets.put(Budget.READS, new BudgetState(Budget.READS, reads, maxPrincipals, meterRegistry));
+		budgets.put(Budget.MUTATIONS, new BudgetState(Budget.MUTATIONS, mutations, maxPrincipals, meterRegistry));
+	}
+
+	/**
+	 * @param mayQueue whether the caller can block its thread while waiting for a slot
+	 * @return a ticket to {@link Ticket#release() release} when the request completes, or a
+	 *         refusal
+	 */
+	public Decision admit(String principal, Budget budget, boolean mayQueue) {
+		BudgetState state = budgets.get(budget);
+		long now = System.nanoTime();
+		long waitNanos = state.buckets.get(principal, p -> new TokenBucket(state.limits, now)).take(now);
+		if (waitNanos > 0) {
+			state.shedByRate.increment();
+			return Decision.refused(seconds(waitNanos));
+		}
+		if (state.slots.tryAcquire()) {
+			return Decision.admitted(state.slots::release);
+		}
+		if (mayQueue && !queueTimeout.isZero()) {
+			long start = System.nanoTime();
+			boolean acquired;
+			try {
+				acquired = state.slots.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				acquired = false;
+			}
+			state.queued.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			if (acquired) {
+				return Decision.admitted(state.slots::release);
+			}
+		}
+		state.shedByConcurrency.increment();
+		return Decision.refused(1);
+	}
+
+	/**
+	 * Reads and everything else, by HTTP method.
+	 */
+	public static Budget budgetOf(String method) {
+		return "GET".equals(method) || "HEAD".equals(method) ? Budget.READS : Budget.MUTATIONS;
+	}
+
+	/**
+	 * The claimed user name of an {@code Authorization: Basic} header at the client address, or
+	 * the address alone when there is no such header or it cannot be decoded.
+	 */
+	public static String principalOf(String authorization, String remoteAddress) {
+		if (authorization != null && authorization.regionMatches(true, 0, "Basic ", 0, 6)) {
+			try {
+				String credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()),
+						StandardCharsets.UTF_8);
+				int separator = credentials.indexOf(':');
+				if (separator > 0) {
+					return "user:" + credentials.substring(0, separator) + "@" + remoteAddress;
+				}
+			} catch (IllegalArgumentException e) {
+				// Not base64: fall back to the address, authentication will reject it
+			}
+		}
+		return "address:" + remoteAddress;
+	}
+
+	private static long seconds(long nanos) {
+		return Math.max(1, (nanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+	}
+
+	public enum Budget {
+		READS, MUTATIONS
+	}
+
+	/**
+	 * @param rate          tokens added to each principal's bucket per second
+	 * @param burst         tokens a bucket holds at most, i.e. requests a rested client may send at once
+	 * @param maxConcurrent requests of this budget in progress at once, over all principals
+	 */
+	public record Limits(double rate, int burst, int maxConcurrent) {
+	}
+
+	@FunctionalInterface
+	public interface Ticket {
+		void release();
+	}
+
+	/**
+	 * @param ticket            set when admitted
+	 * @param retryAfterSeconds set when refused
+	 */
+	public record Decision(Ticket ticket, long retryAfterSeconds) {
+
+		static Decision admitted(Ticket ticket) {
+			return new Decision(ticket, 0);
+		}
+
+		static Decision refused(long retryAfterSeconds) {
+			return new Decision(null, retryAfterSeconds);
+		}
+
+		public boolean isAdmitted() {
+			return ticket != null;
+		}
+	}
+
+	private static final class BudgetState {
+		private final Limits limits;
+		private final Semaphore slots;
+		private final Cache<String, TokenBucket> buckets;
+		private final Counter shedByRate;
+		private final Counter shedByConcurrency;
+		private final Timer queued;
+
+		BudgetState(Budget budget, Limits limits, long maxPrincipals, MeterRegistry meterRegistry) {
+			this.limits = limits;
+			this.slots = new Semaphore(limits.maxConcurrent());
+			// An idle bucket is full again after burst / rate seconds, so forgetting it then changes nothing
+			long refillNanos = (long) Math.ceil(limits.burst() / limits.rate() * NANOS_PER_SECOND);
+			this.buckets = Caffeine.newBuilder().maximumSize(maxPrincipals)
+					.expireAfterAccess(Duration.ofNanos(refillNanos)).build();
+			String tag = budget.name().toLowerCase(Locale.ROOT);
+			this.shedByRate = Counter.builder("bankaccounts.admission.shed").tag("budget", tag).tag("reason", "rate")
+					.description("Requests refused before authentication").register(meterRegistry);
+			this.shedByConcurrency = Counter.builder("bankaccounts.admission.shed").tag("budget", tag)
+					.tag("reason", "concurrency").description("Requests refused before authentication")
+					.register(meterRegistry);
+			this.queued = Timer.builder("bankaccounts.admission.queued").tag("budget", tag)
+					.description("Time requests waited for a free slot").register(meterRegistry);
+			Gauge.builder("bankaccounts.admission.in-flight", slots, s -> limits.maxConcurrent() - s.availablePermits())
+					.tag("budget", tag).description("Admitted requests in progress").register(meterRegistry);
+		}
+	}
+
+	/**
+	 * A token bucket kept as the time at which it would be full again if nothing else were taken
+	 * (the "theoretical arrival time" of the generic cell rate algorithm), so taking a token is one
+	 * compare-and-set.
+	 */
+	private static final class TokenBucket {
+		private final long interval;
+		private final long capacity;
+		private final AtomicLong fullAt;
+
+		TokenBucket(Limits limits, long now) {
+			this.interval = (long) (NANOS_PER_SECOND / limits.rate());
+			this.capacity = interval * limits.burst();
+			this.fullAt = new AtomicLong(now);
+		}
+
+		/**
+		 * @return 0 when a token was taken, otherwise how long until one will be available
+		 */
+		long take(long now) {
+			while (true) {
+				long current = fullAt.get();
+				// nanoTime values are only compared by difference
+				long next = (current - now > 0 ? current : now) + interval;
+				if (next - now > capacity) {
+					return next - now - capacity;
+				}
+				if (fullAt.compareAndSet(current, next)) {
+					return 0;
+				}
+			}
+		}
+	}
+}
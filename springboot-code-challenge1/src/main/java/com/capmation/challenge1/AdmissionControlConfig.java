@@ -0,0 +1,181 @@
+package com.capmation.challenge1;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import com.capmation.challenge1.AdmissionControl.Decision;
+import com.capmation.challenge1.AdmissionControl.Limits;
+import com.capmation.challenge1.AdmissionControl.Ticket;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * Enables admission control ({@code bankaccounts.admission.enabled=true}): every
+ * {@code /bankaccounts} request goes through {@link AdmissionControl} in a filter that runs
+ * before Spring Security's, so a request over its budget gets a 429 with {@code Retry-After}
+ * without costing a password check or a database call.
+ * <p>
+ * On the servlet stack a request may wait up to {@code bankaccounts.admission.queue-timeout} for
+ * a slot; the reactive stack never blocks an event loop thread for one and sheds right away.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bankaccounts.admission.enabled", havingValue = "true")
+public class AdmissionControlConfig {
+
+	// Ahead of the security filter chain, which has SecurityProperties.DEFAULT_FILTER_ORDER on both stacks
+	private static final int ORDER = SecurityProperties.DEFAULT_FILTER_ORDER - 10;
+
+	@Bean
+	public AdmissionControl admissionControl(MeterRegistry meterRegistry,
+			@Value("${bankaccounts.admission.reads.rate:100}") double readRate,
+			@Value("${bankaccounts.admission.reads.burst:200}") int readBurst,
+			@Value("${bankaccounts.admission.reads.max-concurrent:200}") int maxConcurrentReads,
+			@Value("${bankaccounts.admission.mutations.rate:20}") double mutationRate,
+			@Value("${bankaccounts.admission.mutations.burst:40}") int mutationBurst,
+			@Value("${bankaccounts.admission.mutations.max-concurrent:50}") int maxConcurrentMutations,
+			@Value("${bankaccounts.admission.queue-timeout:50ms}") Duration queueTimeout,
+			@Value("${bankaccounts.admission.max-principals:100000}") long maxPrincipals) {
+		return new AdmissionControl(new Limits(readRate, readBurst, maxConcurrentReads),
+				new Limits(mutationRate, mutationBurst, maxConcurrentMutations), queueTimeout, maxPrincipals,
+				meterRegistry);
+	}
+
+	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+	public FilterRegistrationBean<OncePerRequestFilter> admissionControlFilter(AdmissionControl admissionControl) {
+		OncePerRequestFilter filter = new OncePerRequestFilter() {
+			@Override
+			protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+					throws ServletException, IOException {
+				Decision decision = admissionControl.admit(
+						AdmissionControl.principalOf(request.getHeader(HttpHeaders.AUTHORIZATION), request.getRemoteAddr()),
+						AdmissionControl.budgetOf(request.getMethod()), true);
+				if (!decision.isAdmitted()) {
+					response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+					response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(decision.retryAfterSeconds()));
+					return;
+				}
+				try {
+					chain.doFilter(request, response);
+				} finally {
+					// An async request (e.g. an export) is still in progress when the chain returns
+					if (request.isAsyncStarted()) {
+						request.getAsyncContext().addListener(new ReleaseOnCompletion(decision.ticket()));
+					} else {
+						decision.ticket().release();
+					}
+				}
+			}
+		};
+		FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(filter);
+		registration.addUrlPatterns("/bankaccounts", "/bankaccounts/*");
+		registration.setOrder(ORDER);
+		return registration;
+	}
+
+	/**
+	 * Releases the ticket of an async request once, whichever of completion, error or timeout is
+	 * reported first (the container reports completion after the other two).
+	 */
+	private static final class ReleaseOnCompletion implements AsyncListener {
+
+		private final AtomicBoolean released = new AtomicBoolean();
+		private final Ticket ticket;
+
+		ReleaseOnCompletion(Ticket ticket) {
+			this.ticket = ticket;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			release();
+		}
+
+		// Listeners are dropped when async processing starts again
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			event.getAsyncContext().addListener(this);
+		}
+
+		private void release() {
+			if (released.compareAndSet(false, true)) {
+				ticket.release();
+			}
+		}
+	}
+
+	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+	public WebFilter reactiveAdmissionControlFilter(AdmissionControl admissionControl) {
+		return new ReactiveAdmissionControlFilter(admissionControl);
+	}
+
+	private static final class ReactiveAdmissionControlFilter implements WebFilter, Ordered {
+
+		private final AdmissionControl admissionControl;
+
+		ReactiveAdmissionControlFilter(AdmissionControl admissionControl) {
+			this.admissionControl = admissionControl;
+		}
+
+		@Override
+		public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+			ServerHttpRequest request = exchange.getRequest();
+			String path = request.getPath().pathWithinApplication().value();
+			if (!path.equals("/bankaccounts") && !path.startsWith("/bankaccounts/")) {
+				return chain.filter(exchange);
+			}
+			String address = request.getRemoteAddress() == null ? null
+					: request.getRemoteAddress().getAddress().getHostAddress();
+			Decision decision = admissionControl.admit(
+					AdmissionControl.principalOf(request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION), address),
+					AdmissionControl.budgetOf(request.getMethod().name()), false);
+			if (!decision.isAdmitted()) {
+				exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+				exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+						Long.toString(decision.retryAfterSeconds()));
+				return exchange.getResponse().setComplete();
+			}
+			return chain.filter(exchange).doFinally(signal -> decision.ticket().release());
+		}
+
+		@Override
+		public int getOrder() {
+			return ORDER;
+		}
+	}
+}
@@ -2,7 +2,9 @@ package com.capmation.challenge1;
 
 import org.springframework.data.annotation.Id;
 
+import com.capmation.challenge1.Money.Cents;
 
-public record BankAccount(@Id Long id, Double amount, String accountType, String owner) {
+
+public record BankAccount(@Id Long id, @Cents long amount, String accountType, String owner) {
 
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package com.capmation.challenge1;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Bounded read-through cache in front of {@link BankAccountRepository}. Single accounts are
+ * cached by id and listing pages by owner and page request, both with a maximum size and a
+ * time to live.
+ * <p>
+ * Writers call {@link #evict(Long, String)} after their transaction has committed. Entries are
+ * evicted rather than overwritten because two writers may finish in a different order than they
+ * committed, and a late overwrite would leave the older balance behind. Pages are invalidated
+ * by moving the owner to a new generation, so a page that was being loaded while the write
+ * committed is stored under a key nobody asks for any more.
+ * <p>
+ * Loaders run outside the cache: Caffeine's {@code get(key, loader)} calls them inside a
+ * {@code ConcurrentHashMap} bin lock, which pins a virtual thread to its carrier for the whole
+ * query. A loaded account is only kept if no eviction of its id (or of an id in the same stripe)
+ * happened while it was being read, so a slow reader still cannot leave an older balance behind.
+ */
+@Component
+public class BankAccountCache {
+
+	private static final int EVICTION_STRIPES = 64;
+
+	private final Cache<Long, BankAccount> accounts;
+	private final Cache<PageKey, List<BankAccount>> pages;
+	private final Cache<String, Long> generations;
+	private final AtomicLong nextGeneration = new AtomicLong();
+	private final AtomicLongArray evictions = new AtomicLongArray(EVICTION_STRIPES);
+
+	public BankAccountCache(@Value("${bankaccounts.cache.max-size:10000}") long maxSize,
+			@Value("${bankaccounts.cache.page-max-size:1000}") long pageMaxSize,
+			@Value("${bankaccounts.cache.ttl:30s}") Duration ttl) {
+		this.accounts = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+		this.pages = Caffeine.newBuilder().maximumSize(pageMaxSize).expireAfterWrite(ttl).recordStats().build();
+		// Every generation handed out is unique, so losing an entry here can never revive an old page
+		this.generations = Caffeine.newBuilder().maximumSize(pageMaxSize).build();
+	}
+
+	/**
+	 * Returns the cached account or loads it with {@code loader}. Missing accounts are not cached.
+	 */
+	public BankAccount get(Long id, Function<Long, BankAccount> loader) {
+		BankAccount cached = accounts.getIfPresent(id);
+		if (cached != null) {
+			return cached;
+		}
+		long evictionsBefore = evictions.get(stripe(id));
+		BankAccount loaded = loader.apply(id);
+		if (loaded != null && accounts.asMap().putIfAbsent(id, loaded) == null
+				&& evictions.get(stripe(id)) != evictionsBefore) {
+			// A writer committed while we were reading: what we read may predate it
+			accounts.asMap().remove(id, loaded);
+		}
+		return loaded;
+	}
+
+	public List<BankAccount> getPage(String owner, int page, int size, String sort, Supplier<List<BankAccount>> loader) {
+		PageKey key = new PageKey(owner, generation(owner), page, size, sort);
+		List<BankAccount> cached = pages.getIfPresent(key);
+		if (cached != null) {
+			return cached;
+		}
+		List<BankAccount> loaded = loader.get();
+		if (loaded != null) {
+			pages.put(key, loaded);
+		}
+		return loaded;
+	}
+
+	/**
+	 * Caches a freshly created account. Only safe for rows no other request can have written yet.
+	 */
+	public void putNew(BankAccount bankAccount) {
+		accounts.put(bankAccount.id(), bankAccount);
+		evictPages(bankAccount.owner());
+	}
+
+	public void evict(Long id, String owner) {
+		// Counted before invalidating, so a concurrent get either sees the count or loses its entry
+		evictions.incrementAndGet(stripe(id));
+		accounts.invalidate(id);
+		evictPages(owner);
+	}
+
+	public void evictPages(String owner) {
+		generations.put(owner, nextGeneration.incrementAndGet());
+	}
+
+	public CacheStatistics stats() {
+		return new CacheStatistics(Statistics.of(accounts), Statistics.of(pages));
+	}
+
+	private long generation(String owner) {
+		return generations.get(owner, o -> nextGeneration.incrementAndGet());
+	}
+
+	private static int stripe(Long id) {
+		return Long.hashCode(id) & (EVICTION_STRIPES - 1);
+	}
+
+	private record PageKey(String owner, long generation, int page, int size, String sort) {
+	}
+
+	public record CacheStatistics(Statistics accounts, Statistics pages) {
+	}
+
+	public record Statistics(long size, long hits, long misses, long evictions) {
+
+		static Statistics of(Cache<?, ?> cache) {
+			var stats = cache.stats();
+			return new Statistics(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+		}
+	}
+}
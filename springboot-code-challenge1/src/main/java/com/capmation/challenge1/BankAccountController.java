@@ -1,33 +1,81 @@
 package com.capmation.challenge1;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.security.Principal;
+import java.time.Instant;
 import java.util.List;
-import java.util.Optional;
 
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.capmation.challenge1.BankAccountImporter.ImportSummary;
+import com.capmation.challenge1.BatchOperationService.ItemResult;
+import com.capmation.challenge1.TransactionHistory.Transaction;
+import com.capmation.challenge1.TransferService.TransferResult;
+
 @RestController
 @RequestMapping("/bankaccounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class BankAccountController {
 	
+	static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+	static final String NDJSON = "application/x-ndjson";
+	static final String CSV = "text/csv";
+	
 	private BankAccountRepository bankAccountRepository;
+	private OwnerBalances ownerBalances;
+	private BankAccountCache bankAccountCache;
+	private BankAccountExporter bankAccountExporter;
+	private BankAccountImporter bankAccountImporter;
+	private TransferService transferService;
+	private BatchOperationService batchOperationService;
+	private TransactionHistory transactionHistory;
+	private Ledger ledger;
+	private DepositCoalescer depositCoalescer;
+	private int maxBatchOperations;
 
-	public BankAccountController(BankAccountRepository bankAccountRepository) {
+	public BankAccountController(BankAccountRepository bankAccountRepository, OwnerBalances ownerBalances,
+			BankAccountCache bankAccountCache,
+			BankAccountExporter bankAccountExporter, BankAccountImporter bankAccountImporter,
+			TransferService transferService,
+			BatchOperationService batchOperationService, TransactionHistory transactionHistory,
+			ObjectProvider<Ledger> ledger,
+			ObjectProvider<DepositCoalescer> depositCoalescer,
+			@Value("${bankaccounts.batch.max-operations:10000}") int maxBatchOperations) {
 		this.bankAccountRepository = bankAccountRepository;
+		this.ownerBalances = ownerBalances;
+		this.bankAccountCache = bankAccountCache;
+		this.bankAccountExporter = bankAccountExporter;
+		this.bankAccountImporter = bankAccountImporter;
+		this.transferService = transferService;
+		this.batchOperationService = batchOperationService;
+		this.transactionHistory = transactionHistory;
+		// Only present in ledger mode (see LedgerConfig)
+		this.ledger = ledger.getIfAvailable();
+		// Only present with bankaccounts.coalescing.enabled=true
+		this.depositCoalescer = depositCoalescer.getIfAvailable();
+		this.maxBatchOperations = maxBatchOperations;
 	}
 	
 	@GetMapping("/{requestedId}")
@@ -41,19 +89,114 @@ public class BankAccountController {
     }
 	
 	@GetMapping
-    public ResponseEntity<List<BankAccount>> findAll(Pageable pageable, Principal principal) {
-        Page<BankAccount> page = bankAccountRepository.findByOwner(principal.getName(),
-                PageRequest.of(
-                        pageable.getPageNumber(),
-                        pageable.getPageSize(),
-                        pageable.getSortOr(Sort.by(Sort.Direction.ASC, "amount"))
-                ));
-        return ResponseEntity.ok(page.getContent());
+    public ResponseEntity<List<BankAccount>> findAll(Pageable pageable, @RequestParam(required = false) String cursor,
+    		Principal principal) {
+        if (cursor != null) {
+            return findAllAfter(cursor, pageable.getPageSize(), principal);
+        }
+        PageRequest pageRequest = PageRequest.of(
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                pageable.getSortOr(Sort.by(Sort.Direction.ASC, "amount"))
+        );
+        List<BankAccount> content = bankAccountCache.getPage(principal.getName(), pageRequest.getPageNumber(),
+                pageRequest.getPageSize(), pageRequest.getSort().toString(),
+                () -> bankAccountRepository.findByOwner(principal.getName(), pageRequest).getContent());
+        return ResponseEntity.ok(withLedgerBalances(content));
+    }
+	
+	/**
+	 * The caller's number of accounts and total balance, overall and per account type, read from
+	 * the aggregates kept by {@link OwnerBalances} instead of summing every account.
+	 */
+	@GetMapping("/summary")
+    public ResponseEntity<OwnerBalances.OwnerSummary> summary(Principal principal) {
+		return ResponseEntity.ok(ownerBalances.summary(principal.getName()));
+    }
+	
+	@GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportAll(Principal principal) {
+		String owner = principal.getName();
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(NDJSON))
+				.body(out -> bankAccountExporter.export(owner, out));
+    }
+	
+	/**
+	 * Keyset listing, used when the request carries a {@code cursor} (empty for the first page).
+	 * Rows are ordered by amount and id and the next page starts right after the cursor, so deep
+	 * pages cost the same as the first one and no count query runs. The cursor for the next page
+	 * comes back in the {@code X-Next-Cursor} header, which is absent on the last page.
+	 */
+	private ResponseEntity<List<BankAccount>> findAllAfter(String cursor, int pageSize, Principal principal) {
+		KeysetCursor after;
+		try {
+			after = cursor.isEmpty() ? null : KeysetCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		// Ask for one extra row to know whether there is a next page
+		List<BankAccount> rows = after == null
+				? bankAccountRepository.findFirstPageByOwner(principal.getName(), pageSize + 1)
+				: bankAccountRepository.findPageByOwnerAfter(principal.getName(), after.amount(), after.id(), pageSize + 1);
+		if (rows.size() <= pageSize) {
+			return ResponseEntity.ok(withLedgerBalances(rows));
+		}
+		List<BankAccount> page = rows.subList(0, pageSize);
+		return ResponseEntity.ok()
+				.header(NEXT_CURSOR_HEADER, KeysetCursor.after(page.get(pageSize - 1)).encode())
+				.body(withLedgerBalances(page));
+	}
+	
+	/**
+	 * The account's deposits, withdrawals and transfer legs (see {@link TransactionHistory}), oldest
+	 * first, optionally only those recorded in {@code [from, to)}, given as ISO-8601 instants. Pages
+	 * work like the keyset listing: the next one starts after the {@code cursor} taken from the
+	 * {@code X-Next-Cursor} header. In ledger mode entries show up with the next checkpoint.
+	 */
+	@GetMapping("/{requestedId}/transactions")
+    public ResponseEntity<List<Transaction>> findTransactions(@PathVariable Long requestedId,
+    		@RequestParam(required = false) Instant from, @RequestParam(required = false) Instant to,
+    		@RequestParam(required = false) String cursor, Pageable pageable, Principal principal) {
+		if (from != null && to != null && !from.isBefore(to)) {
+			return ResponseEntity.badRequest().build();
+		}
+		TransactionHistory.Cursor after;
+		try {
+			after = cursor == null || cursor.isEmpty() ? null : TransactionHistory.Cursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		if (findBankAccount(requestedId, principal) == null) {
+			return ResponseEntity.notFound().build();
+		}
+		int pageSize = pageable.getPageSize();
+		// Ask for one extra entry to know whether there is a next page
+		List<Transaction> rows = transactionHistory.find(requestedId, from, to, after, pageSize + 1);
+		if (rows.size() <= pageSize) {
+			return ResponseEntity.ok(rows);
+		}
+		List<Transaction> page = rows.subList(0, pageSize);
+		return ResponseEntity.ok()
+				.header(NEXT_CURSOR_HEADER, TransactionHistory.Cursor.after(page.get(pageSize - 1)).encode())
+				.body(page);
     }
 	
 	@PostMapping
     private ResponseEntity<Void> createBankAccount(@RequestBody BankAccount newBankAccountRequest, UriComponentsBuilder ucb) {
-        BankAccount savedBankAccount = bankAccountRepository.save(newBankAccountRequest); //TODO: Using the repository create a new bank account
+        if (newBankAccountRequest.amount() < 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        // A request that carries an id overwrites that account, so the previous owner's listing changes too
+        OwnerBalances.Saved saved = ownerBalances.save(newBankAccountRequest); //TODO: Using the repository create a new bank account
+        BankAccount previous = saved.previous();
+        BankAccount savedBankAccount = saved.saved();
+        if (previous == null) {
+            bankAccountCache.putNew(savedBankAccount);
+        } else {
+            bankAccountCache.evict(previous.id(), previous.owner());
+            bankAccountCache.evictPages(savedBankAccount.owner());
+        }
         
         URI locationOfNewBankAccount = ucb
                 .path("bankaccounts/{id}")
@@ -63,6 +206,19 @@ public class BankAccountController {
         return ResponseEntity.created(locationOfNewBankAccount).build();
     }
 	
+	/**
+	 * Creates many accounts from a streamed CSV or NDJSON body (see {@link BankAccountImporter}).
+	 * The body is read as it arrives, never as a whole.
+	 */
+	@PostMapping(value = "/import", consumes = { CSV, NDJSON })
+    public ResponseEntity<ImportSummary> importBankAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+    		InputStream body) throws IOException {
+		BankAccountImporter.Format format = MediaType.parseMediaType(CSV).isCompatibleWith(contentType)
+				? BankAccountImporter.Format.CSV
+				: BankAccountImporter.Format.NDJSON;
+		return ResponseEntity.ok(bankAccountImporter.importAccounts(body, format));
+    }
+	
 	@PatchMapping("/{requestedId}/deposit")
     private ResponseEntity<BankAccount> putDepositInBankAccount(@PathVariable Long requestedId, @RequestBody DepositRecord depositRecord) {
 		/* TODO
@@ -72,23 +228,22 @@ public class BankAccountController {
 		 * 3. Return OK response code (200) to the consumer with the updated resource in the response body.
 		 * 4. If the account was not found return the corresponding HTTP response.
 		 * */
-		ResponseEntity<BankAccount> resp = null;
-		//1. Verify the existence of bank account. (Any role can make a deposit
-		Optional<BankAccount> opt =  bankAccountRepository.findById(requestedId);
-		BankAccount baInicial = opt.get();
-		if (baInicial == null) {
+		if (depositRecord.amount() <= 0) {
+			return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+		}
+		// 1-2. Verify the existence of the bank account and apply the deposit in a single statement
+		BankAccount baAfter = applyDeposit(requestedId, depositRecord);
+		if (baAfter == null) {
+			// Nothing was updated: either there is no such account or the balance would overflow
+			if (bankAccountRepository.existsById(requestedId)) {
+				return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+			}
 			//4. If the account was not found return the corresponding HTTP response.
-			resp = new ResponseEntity<>(HttpStatus.NOT_FOUND);
-		} else {
-			// 2. Update the bank account amount with the given deposit amount.
-			BankAccount baAfter = new BankAccount(requestedId, baInicial.amount() + depositRecord.amount(), baInicial.accountType(), baInicial.owner());
-			bankAccountRepository.save(baAfter);
-			
-			//3. Return OK response code (200) to the consumer with the updated resource in the response body.
-			resp = ResponseEntity.ok(baAfter);
+			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
 		}
-		
-		return resp;
+		bankAccountCache.evict(baAfter.id(), baAfter.owner());
+		//3. Return OK response code (200) to the consumer with the updated resource in the response body.
+		return ResponseEntity.ok(baAfter);
     }
 	
 	@PatchMapping("/{requestedId}/withdrawal")
@@ -101,31 +256,31 @@ public class BankAccountController {
 		 * 4. If the account was not found return the corresponding HTTP response. If the user trying to make the withdrawal is not the owner
 		 * then return a not found response as well.
 		 * */
-		ResponseEntity<BankAccount> resp = null;
-		//1. Verify the existence of bank account. (Only the bank account owner is able to perform a withdrawal)
-		Optional<BankAccount> opt =  bankAccountRepository.findById(requestedId);
-		BankAccount baInicial = opt.get();
+		if (withdrawalRecord.amount() <= 0) {
+			return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+		}
+		// 1-2. Apply the withdrawal only if the account exists, belongs to the caller and has enough funds
+		BankAccount baAfter = ledger != null
+				? ledger.withdraw(requestedId, principal.getName(), withdrawalRecord.amount(), withdrawalRecord.dateTime())
+				: ownerBalances.subtractFromBalance(requestedId, principal.getName(), withdrawalRecord.amount(),
+						withdrawalRecord.dateTime());
+		if (baAfter != null) {
+			bankAccountCache.evict(baAfter.id(), baAfter.owner());
+			//3. Return OK response code (200) to the consumer with the updated resource in the response body.
+			return ResponseEntity.ok(baAfter);
+		}
+		// Nothing was updated: find out why (this extra lookup only happens on the failure path)
+		BankAccount baInicial = bankAccountRepository.findById(requestedId).orElse(null);
 		if (baInicial == null || !baInicial.owner().equalsIgnoreCase(principal.getName())) {
 			//4. If the account was not found return the corresponding HTTP response. If the user trying to make the withdrawal is not the owner
 			// then return a not found response as well.
-			resp = new ResponseEntity<>(HttpStatus.NOT_FOUND);
-		} else {
-			//2. Update the bank account amount with the given withdrawal amount.
-			if (baInicial.amount() < withdrawalRecord.amount()) {
-				resp = new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-			} else {
-				BankAccount baAfter = new BankAccount(requestedId, baInicial.amount() - withdrawalRecord.amount(), baInicial.accountType(), baInicial.owner());
-				bankAccountRepository.save(baAfter);
-				//3. Return OK response code (200) to the consumer with the updated resource in the response body.
-				resp = ResponseEntity.ok(baAfter);
-			}
-			
+			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
 		}
-		return resp;
+		return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
     }
 	
 	@PatchMapping("/{requestedId}/tranference")
-    private ResponseEntity<BankAccount> putTransferenceInBankAccount(@PathVariable Long requestedId, @RequestBody TransferenceRecord transferenceRecord) {
+    private ResponseEntity<BankAccount> putTransferenceInBankAccount(@PathVariable Long requestedId, @RequestBody TransferenceRecord transferenceRecord, Principal principal) {
 		/* TODO
 		 * You need to: 
 		 * 1. Verify the existence of bank account. (Only the bank account owner is able to perform a transference)
@@ -135,47 +290,55 @@ public class BankAccountController {
 		 * 5. If the account was not found return the corresponding HTTP response. If the user trying to make the withdrawal is not the owner
 		 * then return a not found response as well.
 		 * */
-		
-		 //* 1. Verify the existence of bank account. (Only the bank account owner is able to perform a transference)		
-
-		
-		ResponseEntity<BankAccount> resp = null;
-		// Origin Account
-		Optional<BankAccount> opt =  bankAccountRepository.findById(requestedId);
-		BankAccount baInicial = opt.get();
-		
-		// Target Account
-		Optional<BankAccount> opt1 =  bankAccountRepository.findById(transferenceRecord.destinationId());
-		BankAccount baTarget = opt1.get();
-		
-		
-		if (baInicial == null) {
-			//5. If the account was not found return the corresponding HTTP response.
-			resp = new ResponseEntity<>(HttpStatus.NOT_FOUND);
-		} else {
-			// 2. Update the bank account amount with the given transference amount.
-			BankAccount baSourceAfter = new BankAccount(requestedId, baInicial.amount() + transferenceRecord.amount(), baInicial.accountType(), baInicial.owner());
-			bankAccountRepository.save(baSourceAfter);
-			
-			if (baTarget == null) {
-				//5. If the account was not found return the corresponding HTTP response.
-				resp = new ResponseEntity<>(HttpStatus.NOT_FOUND);
-			} else {
-				
-				// 3. Update the destination account to be updated like a normal deposit.
-				BankAccount baTargetAfter = new BankAccount(transferenceRecord.destinationId(), baTarget.amount() + transferenceRecord.amount(), baTarget.accountType(), baTarget.owner());
-				bankAccountRepository.save(baTargetAfter);
-			}
+		// 1-3. Debit the origin and credit the target in one transaction (see TransferService)
+		TransferResult result = ledger != null
+				? ledger.transfer(requestedId, transferenceRecord.destinationId(), transferenceRecord.amount(),
+						principal.getName(), transferenceRecord.dateTime())
+				: transferService.transfer(requestedId, transferenceRecord.destinationId(),
+						transferenceRecord.amount(), principal.getName(), transferenceRecord.dateTime());
+		return switch (result.status()) {
 			//4. Return OK response code (200) to the consumer with the updated resource in the response body.
-			resp = ResponseEntity.ok(baSourceAfter);
-			
-		}		
-				
-		return resp;
+			case COMPLETED -> ResponseEntity.ok(result.source());
+			//5. If the account was not found return the corresponding HTTP response.
+			case NOT_FOUND -> new ResponseEntity<>(HttpStatus.NOT_FOUND);
+			case INSUFFICIENT_FUNDS, INVALID -> new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+		};
+    }
+	
+	@PostMapping("/batch")
+    private ResponseEntity<List<ItemResult>> applyBatch(@RequestBody List<BatchOperationRecord> operations,
+    		@RequestParam(defaultValue = "true") boolean atomic, Principal principal) {
+		if (operations.size() > maxBatchOperations) {
+			return new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE);
+		}
+		if (ledger != null) {
+			// Batches write bank_account directly, which the ledger checkpoints would overwrite
+			return new ResponseEntity<>(HttpStatus.CONFLICT);
+		}
+		return ResponseEntity.ok(batchOperationService.apply(operations, principal.getName(), atomic));
     }
 	
+	private BankAccount applyDeposit(Long requestedId, DepositRecord depositRecord) {
+		if (ledger != null) {
+			return ledger.deposit(requestedId, depositRecord.amount(), depositRecord.dateTime());
+		}
+		if (depositCoalescer != null) {
+			return depositCoalescer.deposit(requestedId, depositRecord.amount(), depositRecord.dateTime());
+		}
+		return ownerBalances.addToBalance(requestedId, depositRecord.amount(), depositRecord.dateTime());
+	}
+	
 	private BankAccount findBankAccount(Long requestedId, Principal principal) {
-        return bankAccountRepository.findByIdAndOwner(requestedId, principal.getName());
+        BankAccount bankAccount = bankAccountCache.get(requestedId, id -> bankAccountRepository.findById(id).orElse(null));
+        return bankAccount != null && bankAccount.owner().equals(principal.getName()) ? withLedgerBalance(bankAccount) : null;
     }
 
+	private BankAccount withLedgerBalance(BankAccount bankAccount) {
+		return ledger != null ? ledger.overlay(bankAccount) : bankAccount;
+	}
+
+	private List<BankAccount> withLedgerBalances(List<BankAccount> bankAccounts) {
+		return ledger != null ? bankAccounts.stream().map(ledger::overlay).toList() : bankAccounts;
+	}
+
 }
@@ -0,0 +1,78 @@
+package com.capmation.challenge1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes all of an owner's accounts as newline-delimited JSON while the rows are being read.
+ * Rows are fetched {@code fetchSize} at a time and each one is serialized and dropped before
+ * the next, so memory use does not depend on how many accounts the owner has. A failed write,
+ * which is how a client disconnect shows up, aborts the query and releases the connection.
+ */
+@Component
+public class BankAccountExporter {
+
+	private static final String EXPORT_SQL = "SELECT id, amount, account_type, owner FROM bank_account WHERE owner = ? ORDER BY id";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final ObjectWriter writer;
+	private final int flushEvery;
+
+	public BankAccountExporter(DataSource dataSource, PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+			@Value("${bankaccounts.export.fetch-size:500}") int fetchSize,
+			@Value("${bankaccounts.export.flush-every:500}") int flushEvery) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(fetchSize);
+		// Some drivers only stream with a fetch size inside a transaction
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		// Flushing after every row would turn each line into its own HTTP chunk
+		this.writer = objectMapper.writerFor(BankAccount.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+				.withRootValueSeparator("");
+		this.flushEvery = flushEvery;
+	}
+
+	/**
+	 * @return the number of accounts written
+	 */
+	public long export(String owner, OutputStream out) throws IOException {
+		try (JsonGenerator generator = writer.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+			long[] written = { 0 };
+			try {
+				transactionTemplate.executeWithoutResult(tx -> jdbcTemplate.query(EXPORT_SQL, rs -> {
+					BankAccount account = new BankAccount(rs.getLong("id"), rs.getLong("amount"),
+							rs.getString("account_type"), rs.getString("owner"));
+					try {
+						writer.writeValue(generator, account);
+						generator.writeRaw('\n');
+						if (++written[0] % flushEvery == 0) {
+							generator.flush();
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, owner));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			generator.flush();
+			return written[0];
+		}
+	}
+}
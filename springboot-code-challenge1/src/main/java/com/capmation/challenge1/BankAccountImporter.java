@@ -0,0 +1,279 @@
+package com.capmation.challenge1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Creates accounts from a CSV ({@code amount,accountType,owner}, with an optional header line)
+ * or NDJSON (one {@link BankAccount} per line, without an id) body. Lines are parsed as they
+ * are read and inserted {@code chunkSize} at a time with one JDBC batch insert, followed by
+ * the net change to each owner's totals in {@link OwnerBalances}; each chunk is its own
+ * transaction. Only the current chunk is held in memory, whatever the size of the body.
+ * <p>
+ * Lines that cannot be parsed or would break an account rule are skipped and reported with
+ * their line number, up to {@code maxRejections} of them; later ones are only counted.
+ */
+@Component
+public class BankAccountImporter {
+
+	private static final String INSERT_SQL = "INSERT INTO bank_account (amount, account_type, owner) VALUES (?, ?, ?)";
+	// Column sizes in bank_account
+	private static final int MAX_ACCOUNT_TYPE_LENGTH = 10;
+	private static final int MAX_OWNER_LENGTH = 256;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionRetrier transactionRetrier;
+	private final OwnerBalances ownerBalances;
+	private final BankAccountCache bankAccountCache;
+	private final ObjectReader reader;
+	private final int chunkSize;
+	private final int maxRejections;
+	private final Counter created;
+	private final Counter rejected;
+
+	public BankAccountImporter(JdbcTemplate jdbcTemplate, TransactionRetrier transactionRetrier,
+			OwnerBalances ownerBalances, BankAccountCache bankAccountCache, ObjectMapper objectMapper,
+			MeterRegistry meterRegistry,
+			@Value("${bankaccounts.import.chunk-size:1000}") int chunkSize,
+			@Value("${bankaccounts.import.max-rejections:1000}") int maxRejections) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionRetrier = transactionRetrier;
+		this.ownerBalances = ownerBalances;
+		this.bankAccountCache = bankAccountCache;
+		this.reader = objectMapper.readerFor(BankAccount.class);
+		this.chunkSize = chunkSize;
+		this.maxRejections = maxRejections;
+		this.created = Counter.builder("bankaccounts.import.rows").tag("outcome", "created")
+				.description("Lines read by bulk imports").register(meterRegistry);
+		this.rejected = Counter.builder("bankaccounts.import.rows").tag("outcome", "rejected")
+				.description("Lines read by bulk imports").register(meterRegistry);
+	}
+
+	public ImportSummary importAccounts(InputStream body, Format format) throws IOException {
+		long startedAt = System.nanoTime();
+		Summary summary = new Summary();
+		List<BankAccount> chunk = new ArrayList<>(chunkSize);
+		BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+		long lineNumber = 0;
+		for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+			lineNumber++;
+			if (line.isBlank() || (lineNumber == 1 && format == Format.CSV && isHeader(line))) {
+				continue;
+			}
+			try {
+				chunk.add(validate(format == Format.CSV ? parseCsv(line) : parseJson(line)));
+			} catch (IllegalArgumentException e) {
+				summary.reject(lineNumber, e.getMessage());
+				continue;
+			}
+			if (chunk.size() == chunkSize) {
+				insert(chunk, summary);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			insert(chunk, summary);
+		}
+		return summary.finish(System.nanoTime() - startedAt);
+	}
+
+	private void insert(List<BankAccount> chunk, Summary summary) {
+		List<Long> ids = transactionRetrier.execute(tx -> {
+			List<Long> inserted = jdbcTemplate.execute(batchInsert(chunk));
+			SortedMap<OwnerBalances.Key, OwnerBalances.Delta> deltas = new TreeMap<>();
+			for (BankAccount account : chunk) {
+				OwnerBalances.Delta.add(deltas, OwnerBalances.Key.of(account), 1, account.amount());
+			}
+			ownerBalances.applyAll(deltas);
+			return inserted;
+		});
+		TreeSet<String> owners = new TreeSet<>();
+		chunk.forEach(account -> owners.add(account.owner()));
+		owners.forEach(bankAccountCache::evictPages);
+		summary.created(ids);
+		created.increment(ids.size());
+	}
+
+	private static ConnectionCallback<List<Long>> batchInsert(List<BankAccount> chunk) {
+		return connection -> {
+			try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL, new String[] { "id" })) {
+				for (BankAccount account : chunk) {
+					insert.setLong(1, account.amount());
+					insert.setString(2, account.accountType());
+					insert.setString(3, account.owner());
+					insert.addBatch();
+				}
+				insert.executeBatch();
+				List<Long> ids = new ArrayList<>(chunk.size());
+				try (ResultSet keys = insert.getGeneratedKeys()) {
+					while (keys.next()) {
+						ids.add(keys.getLong(1));
+					}
+				}
+				return ids;
+			}
+		};
+	}
+
+	private static BankAccount validate(BankAccount account) {
+		if (account.id() != null) {
+			throw new IllegalArgumentException("Imported accounts cannot carry an id");
+		}
+		if (account.owner() == null || account.owner().isBlank() || account.owner().length() > MAX_OWNER_LENGTH) {
+			throw new IllegalArgumentException("Owner is missing or longer than " + MAX_OWNER_LENGTH + " characters");
+		}
+		if (account.amount() < 0) {
+			throw new IllegalArgumentException("Amount cannot be negative");
+		}
+		String accountType = account.accountType() == null || account.accountType().isBlank() ? "SAVINGS"
+				: account.accountType();
+		if (accountType.length() > MAX_ACCOUNT_TYPE_LENGTH) {
+			throw new IllegalArgumentException("Account type is longer than " + MAX_ACCOUNT_TYPE_LENGTH + " characters");
+		}
+		return new BankAccount(null, account.amount(), accountType, account.owner());
+	}
+
+	private BankAccount parseJson(String line) {
+		try {
+			return reader.readValue(line);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException(e.getOriginalMessage());
+		}
+	}
+
+	private static BankAccount parseCsv(String line) {
+		List<String> fields = CsvLine.split(line);
+		if (fields.size() != 3) {
+			throw new IllegalArgumentException("Expected 3 fields (amount,accountType,owner) but found " + fields.size());
+		}
+		long amount;
+		try {
+			amount = Money.toCents(new BigDecimal(fields.get(0).trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Amount is not a decimal number");
+		}
+		return new BankAccount(null, amount, fields.get(1).trim(), fields.get(2).trim());
+	}
+
+	private static boolean isHeader(String line) {
+		return line.trim().regionMatches(true, 0, "amount", 0, "amount".length());
+	}
+
+	/**
+	 * Splits one CSV line on commas; a field may be quoted, with {@code ""} for a quote inside it.
+	 */
+	static final class CsvLine {
+
+		private CsvLine() {
+		}
+
+		static List<String> split(String line) {
+			List<String> fields = new ArrayList<>(3);
+			StringBuilder field = new StringBuilder();
+			boolean quoted = false;
+			for (int i = 0; i < line.length(); i++) {
+				char c = line.charAt(i);
+				if (quoted) {
+					if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						field.append('"');
+						i++;
+					} else if (c == '"') {
+						quoted = false;
+					} else {
+						field.append(c);
+					}
+				} else if (c == '"') {
+					quoted = true;
+				} else if (c == ',') {
+					fields.add(field.toString());
+					field.setLength(0);
+				} else {
+					field.append(c);
+				}
+			}
+			if (quoted) {
+				throw new IllegalArgumentException("Unterminated quoted field");
+			}
+			fields.add(field.toString());
+			return fields;
+		}
+	}
+
+	public enum Format {
+		CSV, NDJSON
+	}
+
+	private final class Summary {
+		private long created;
+		private long rejectedCount;
+		private final List<IdRange> createdIds = new ArrayList<>();
+		private final List<RejectedLine> rejectedLines = new ArrayList<>();
+
+		void created(List<Long> ids) {
+			created += ids.size();
+			for (Long id : ids) {
+				IdRange last = createdIds.isEmpty() ? null : createdIds.get(createdIds.size() - 1);
+				if (last != null && last.last() + 1 == id) {
+					createdIds.set(createdIds.size() - 1, new IdRange(last.first(), id));
+				} else {
+					createdIds.add(new IdRange(id, id));
+				}
+			}
+		}
+
+		void reject(long line, String reason) {
+			rejectedCount++;
+			rejected.increment();
+			if (rejectedLines.size() < maxRejections) {
+				rejectedLines.add(new RejectedLine(line, reason));
+			}
+		}
+
+		ImportSummary finish(long elapsedNanos) {
+			double seconds = elapsedNanos / 1e9;
+			return new ImportSummary(created, rejectedCount, createdIds, rejectedLines, elapsedNanos / 1_000_000,
+					seconds > 0 ? Math.round(created / seconds) : 0);
+		}
+	}
+
+	/**
+	 * @param createdIds ids of the new accounts, as runs of consecutive ids in creation order
+	 * @param rejectedLines the first {@code maxRejections} rejected lines
+	 * @param rowsPerSecond accounts created per second of the whole import, reading included
+	 */
+	public record ImportSummary(long created, long rejected, List<IdRange> createdIds, List<RejectedLine> rejectedLines,
+			long elapsedMillis, long rowsPerSecond) {
+	}
+
+	public record IdRange(long first, long last) {
+	}
+
+	/**
+	 * @param line line number in the body, starting at 1
+	 */
+	public record RejectedLine(long line, String reason) {
+	}
+}
@@ -0,0 +1,90 @@
+package com.capmation.challenge1;
+
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the counters the services already keep (see {@link StatsController}) as meters, so
+ * they can be scraped together with the request, repository and authentication timers. Values
+ * are read when the registry is scraped; nothing is added to the request path.
+ */
+@Component
+public class BankAccountMetrics implements MeterBinder {
+
+	private final TransactionRetrier transactionRetrier;
+	private final BankAccountCache bankAccountCache;
+	private final ObjectProvider<Ledger> ledger;
+	private final ObjectProvider<DepositCoalescer> depositCoalescer;
+	private final OwnerBalanceReconciler ownerBalanceReconciler;
+
+	public BankAccountMetrics(TransactionRetrier transactionRetrier, BankAccountCache bankAccountCache,
+			ObjectProvider<Ledger> ledger, ObjectProvider<DepositCoalescer> depositCoalescer,
+			OwnerBalanceReconciler ownerBalanceReconciler) {
+		this.transactionRetrier = transactionRetrier;
+		this.bankAccountCache = bankAccountCache;
+		this.ledger = ledger;
+		this.depositCoalescer = depositCoalescer;
+		this.ownerBalanceReconciler = ownerBalanceReconciler;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		counter(registry, "bankaccounts.transaction.conflicts", "Attempts that failed with a concurrency failure",
+				transactionRetrier, r -> r.stats().conflicts());
+		counter(registry, "bankaccounts.transaction.retries", "Attempts started again after a conflict",
+				transactionRetrier, r -> r.stats().retries());
+		counter(registry, "bankaccounts.transaction.exhausted", "Operations that gave up after the last attempt",
+				transactionRetrier, r -> r.stats().exhausted());
+
+		counter(registry, "bankaccounts.aggregates.reconciliations", "Owner balance reconciliation runs",
+				ownerBalanceReconciler, r -> r.stats().runs());
+		counter(registry, "bankaccounts.aggregates.drift", "Owner balance rows found out of date and rebuilt",
+				ownerBalanceReconciler, r -> r.stats().drifted());
+
+		bindCache(registry, "accounts", c -> c.stats().accounts());
+		bindCache(registry, "pages", c -> c.stats().pages());
+
+		Ledger currentLedger = ledger.getIfAvailable();
+		if (currentLedger != null) {
+			counter(registry, "bankaccounts.ledger.journal.groups", "Journal groups forced to disk",
+					currentLedger, l -> l.journalStats().groups());
+			counter(registry, "bankaccounts.ledger.journal.entries", "Journal records written",
+					currentLedger, l -> l.journalStats().entries());
+			Gauge.builder("bankaccounts.ledger.journal.pending", currentLedger, l -> l.journalStats().pending())
+					.description("Journal records queued but not yet written").register(registry);
+		}
+
+		DepositCoalescer coalescer = depositCoalescer.getIfAvailable();
+		if (coalescer != null) {
+			counter(registry, "bankaccounts.coalescing.deposits", "Deposits that went through the coalescer",
+					coalescer, c -> c.stats().operations());
+			counter(registry, "bankaccounts.coalescing.updates", "UPDATE statements issued for coalesced deposits",
+					coalescer, c -> c.stats().updates());
+		}
+	}
+
+	private void bindCache(MeterRegistry registry, String cache,
+			Function<BankAccountCache, BankAccountCache.Statistics> statistics) {
+		FunctionCounter.builder("bankaccounts.cache.gets", bankAccountCache, c -> statistics.apply(c).hits())
+				.tags("cache", cache, "result", "hit").register(registry);
+		FunctionCounter.builder("bankaccounts.cache.gets", bankAccountCache, c -> statistics.apply(c).misses())
+				.tags("cache", cache, "result", "miss").register(registry);
+		FunctionCounter.builder("bankaccounts.cache.evictions", bankAccountCache, c -> statistics.apply(c).evictions())
+				.tags("cache", cache).register(registry);
+		Gauge.builder("bankaccounts.cache.size", bankAccountCache, c -> statistics.apply(c).size())
+				.tags("cache", cache).register(registry);
+	}
+
+	private static <T> void counter(MeterRegistry registry, String name, String description, T source,
+			ToDoubleFunction<T> value) {
+		FunctionCounter.builder(name, source, value).description(description).register(registry);
+	}
+}
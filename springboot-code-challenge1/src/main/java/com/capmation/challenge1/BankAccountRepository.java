@@ -1,11 +1,60 @@
 package com.capmation.challenge1;
 
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface BankAccountRepository extends CrudRepository<BankAccount, Long>, PagingAndSortingRepository<BankAccount, Long> {
 	BankAccount findByIdAndOwner(Long id, String owner);
     Page<BankAccount> findByOwner(String owner, PageRequest amount);
+
+    /**
+     * First page of the keyset listing, ordered by (amount, id). Unlike {@link #findByOwner}
+     * it does not run a count query.
+     */
+    @Query("SELECT * FROM bank_account WHERE owner = :owner ORDER BY amount, id LIMIT :limit")
+    List<BankAccount> findFirstPageByOwner(@Param("owner") String owner, @Param("limit") int limit);
+
+    /**
+     * Next page of the keyset listing: the rows that sort strictly after (amount, id). The
+     * {@code amount >= :amount} term lets the (owner, amount, id) index seek straight to the
+     * starting point instead of skipping over earlier rows.
+     */
+    @Query("SELECT * FROM bank_account WHERE owner = :owner AND amount >= :amount AND (amount > :amount OR id > :id) "
+            + "ORDER BY amount, id LIMIT :limit")
+    List<BankAccount> findPageByOwnerAfter(@Param("owner") String owner, @Param("amount") long amount,
+            @Param("id") Long id, @Param("limit") int limit);
+
+    /**
+     * Adds {@code delta} to the balance in a single statement and returns the updated row, or
+     * {@code null} when the account does not exist or the balance would exceed
+     * {@link Money#MAX_CENTS}.
+     */
+    @Transactional
+    @Query("SELECT * FROM FINAL TABLE (UPDATE bank_account SET amount = amount + :delta "
+            + "WHERE id = :id AND amount <= " + Money.MAX_CENTS + " - :delta)")
+    BankAccount addToBalance(@Param("id") Long id, @Param("delta") long delta);
+
+    /**
+     * Subtracts {@code delta} from the balance only if the account belongs to {@code owner} and
+     * holds at least {@code delta}. Returns the updated row, or {@code null} when nothing changed.
+     */
+    @Transactional
+    @Query("SELECT * FROM FINAL TABLE (UPDATE bank_account SET amount = amount - :delta "
+            + "WHERE id = :id AND LOWER(owner) = LOWER(:owner) AND amount >= :delta)")
+    BankAccount subtractFromBalance(@Param("id") Long id, @Param("owner") String owner, @Param("delta") long delta);
+
+    /**
+     * Reads the account and locks its row until the surrounding transaction ends.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query("SELECT * FROM bank_account WHERE id = :id FOR UPDATE")
+    BankAccount lockById(@Param("id") Long id);
 }
@@ -0,0 +1,16 @@
+package com.capmation.challenge1;
+
+import java.util.Date;
+
+import com.capmation.challenge1.Money.Cents;
+
+/**
+ * One entry of a {@code POST /bankaccounts/batch} request. {@code destinationId} is only used by
+ * transfers; withdrawals and transfers debit {@code accountId}.
+ */
+public record BatchOperationRecord(Type type, Long accountId, Long destinationId, @Cents long amount, Date dateTime) {
+
+	public enum Type {
+		DEPOSIT, WITHDRAWAL, TRANSFER
+	}
+}
@@ -0,0 +1,244 @@
+package com.capmation.challenge1;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.capmation.challenge1.BatchOperationRecord.Type;
+import com.capmation.challenge1.TransactionHistory.Transaction;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Applies many deposits, withdrawals and transfers with a constant number of statements per
+ * chunk of {@code chunkSize} operations: the involved rows are locked and read with one
+ * {@code SELECT ... WHERE id IN (...) ORDER BY id FOR UPDATE}, the operations are applied in
+ * order against those balances in memory, and the changed balances are written back with one
+ * JDBC batch update, followed by the net change to each owner's totals in {@link OwnerBalances}
+ * and one {@link TransactionHistory} entry per applied operation (two per transfer).
+ * <p>
+ * In atomic mode the whole request is one transaction and nothing is written unless every
+ * operation succeeds. Otherwise each chunk commits on its own and failed operations are
+ * simply skipped.
+ */
+@Service
+public class BatchOperationService {
+
+	private static final String LOCK_SQL = "SELECT id, amount, account_type, owner FROM bank_account WHERE id IN (:ids) ORDER BY id FOR UPDATE";
+	private static final String UPDATE_SQL = "UPDATE bank_account SET amount = ? WHERE id = ?";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+	private final TransactionRetrier transactionRetrier;
+	private final OwnerBalances ownerBalances;
+	private final BankAccountCache bankAccountCache;
+	private final TransactionHistory transactionHistory;
+	private final int chunkSize;
+	private final Timer lockWait;
+
+	public BatchOperationService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+			TransactionRetrier transactionRetrier, OwnerBalances ownerBalances, BankAccountCache bankAccountCache,
+			TransactionHistory transactionHistory, MeterRegistry meterRegistry,
+			@Value("${bankaccounts.batch.chunk-size:500}") int chunkSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+		this.transactionRetrier = transactionRetrier;
+		this.ownerBalances = ownerBalances;
+		this.bankAccountCache = bankAccountCache;
+		this.transactionHistory = transactionHistory;
+		this.chunkSize = chunkSize;
+		this.lockWait = Timer.builder("bankaccounts.lock.wait").tag("path", "batch")
+				.description("Time to acquire the locks a mutation needs")
+				.register(meterRegistry);
+	}
+
+	public List<ItemResult> apply(List<BatchOperationRecord> operations, String owner, boolean atomic) {
+		if (atomic) {
+			return commit(operations, 0, owner, true);
+		}
+		List<ItemResult> results = new ArrayList<>(operations.size());
+		for (int from = 0; from < operations.size(); from += chunkSize) {
+			results.addAll(commit(operations.subList(from, Math.min(from + chunkSize, operations.size())), from, owner, false));
+		}
+		return results;
+	}
+
+	private List<ItemResult> commit(List<BatchOperationRecord> operations, int offset, String owner, boolean atomic) {
+		ChunkOutcome outcome = transactionRetrier.execute(tx -> applyChunk(operations, offset, owner, atomic));
+		outcome.written().forEach(bankAccountCache::evict);
+		return outcome.results();
+	}
+
+	private ChunkOutcome applyChunk(List<BatchOperationRecord> operations, int offset, String owner, boolean atomic) {
+		Map<Long, AccountState> accounts = lockWait.record(() -> lock(operations));
+
+		List<ItemResult> results = new ArrayList<>(operations.size());
+		List<Transaction> entries = new ArrayList<>(operations.size());
+		Instant now = transactionHistory.now();
+		boolean failed = false;
+		for (int i = 0; i < operations.size(); i++) {
+			Status status = applyOne(operations.get(i), accounts, owner, entries, now);
+			failed |= status != Status.APPLIED;
+			results.add(new ItemResult(offset + i, status));
+		}
+
+		if (atomic && failed) {
+			// Nothing has been written yet, so rolling back only means not writing
+			results.replaceAll(r -> r.status() == Status.APPLIED ? new ItemResult(r.index(), Status.ROLLED_BACK) : r);
+			return new ChunkOutcome(results, Map.of());
+		}
+
+		List<Object[]> updates = new ArrayList<>();
+		Map<Long, String> written = new HashMap<>();
+		SortedMap<OwnerBalances.Key, OwnerBalances.Delta> deltas = new TreeMap<>();
+		accounts.forEach((id, account) -> {
+			if (account.dirty) {
+				updates.add(new Object[] { account.amount, id });
+				written.put(id, account.owner);
+				OwnerBalances.Delta.add(deltas, new OwnerBalances.Key(account.owner, account.accountType), 0,
+						account.amount - account.initialAmount);
+			}
+		});
+		for (int from = 0; from < updates.size(); from += chunkSize) {
+			jdbcTemplate.batchUpdate(UPDATE_SQL, updates.subList(from, Math.min(from + chunkSize, updates.size())));
+		}
+		ownerBalances.applyAll(deltas);
+		transactionHistory.record(entries);
+		return new ChunkOutcome(results, written);
+	}
+
+	/**
+	 * Locks every account referenced by {@code operations} in ascending id order, which is the
+	 * same order {@link TransferService} uses, so batches and transfers cannot deadlock.
+	 */
+	private Map<Long, AccountState> lock(List<BatchOperationRecord> operations) {
+		TreeSet<Long> ids = new TreeSet<>();
+		for (BatchOperationRecord operation : operations) {
+			if (operation.accountId() != null) {
+				ids.add(operation.accountId());
+			}
+			if (operation.type() == Type.TRANSFER && operation.destinationId() != null) {
+				ids.add(operation.destinationId());
+			}
+		}
+		Map<Long, AccountState> accounts = new HashMap<>();
+		List<Long> sorted = new ArrayList<>(ids);
+		for (int from = 0; from < sorted.size(); from += chunkSize) {
+			namedParameterJdbcTemplate.query(LOCK_SQL,
+					Map.of("ids", sorted.subList(from, Math.min(from + chunkSize, sorted.size()))),
+					rs -> {
+						accounts.put(rs.getLong("id"), new AccountState(rs.getLong("amount"), rs.getString("account_type"),
+								rs.getString("owner")));
+					});
+		}
+		return accounts;
+	}
+
+	/**
+	 * Applies the operation to the balances in memory and, when it succeeds, adds its history
+	 * entries to {@code entries}.
+	 */
+	private static Status applyOne(BatchOperationRecord operation, Map<Long, AccountState> accounts, String owner,
+			List<Transaction> entries, Instant now) {
+		long amount = operation.amount();
+		if (operation.type() == null || operation.accountId() == null || amount <= 0) {
+			return Status.INVALID;
+		}
+		AccountState account = accounts.get(operation.accountId());
+		switch (operation.type()) {
+		case DEPOSIT:
+			if (account == null) {
+				return Status.NOT_FOUND;
+			}
+			if (!Money.canAdd(account.amount, amount)) {
+				return Status.INVALID;
+			}
+			account.add(amount);
+			entries.add(Transaction.deposit(account.toBankAccount(operation.accountId()), amount, now, operation.dateTime()));
+			return Status.APPLIED;
+		case WITHDRAWAL:
+			if (account == null || !account.owner.equalsIgnoreCase(owner)) {
+				return Status.NOT_FOUND;
+			}
+			if (account.amount < amount) {
+				return Status.INSUFFICIENT_FUNDS;
+			}
+			account.add(-amount);
+			entries.add(Transaction.withdrawal(account.toBankAccount(operation.accountId()), amount, now,
+					operation.dateTime()));
+			return Status.APPLIED;
+		case TRANSFER:
+			if (operation.destinationId() == null || operation.destinationId().equals(operation.accountId())) {
+				return Status.INVALID;
+			}
+			AccountState destination = accounts.get(operation.destinationId());
+			if (account == null || destination == null || !account.owner.equalsIgnoreCase(owner)) {
+				return Status.NOT_FOUND;
+			}
+			if (account.amount < amount) {
+				return Status.INSUFFICIENT_FUNDS;
+			}
+			if (!Money.canAdd(destination.amount, amount)) {
+				return Status.INVALID;
+			}
+			account.add(-amount);
+			destination.add(amount);
+			entries.addAll(Transaction.transfer(account.toBankAccount(operation.accountId()),
+					destination.toBankAccount(operation.destinationId()), amount, now, operation.dateTime()));
+			return Status.APPLIED;
+		default:
+			return Status.INVALID;
+		}
+	}
+
+	private static final class AccountState {
+		private final String accountType;
+		private final String owner;
+		private final long initialAmount;
+		private long amount;
+		private boolean dirty;
+
+		AccountState(long amount, String accountType, String owner) {
+			this.initialAmount = amount;
+			this.amount = amount;
+			this.accountType = accountType;
+			this.owner = owner;
+		}
+
+		void add(long delta) {
+			amount += delta;
+			dirty = true;
+		}
+
+		BankAccount toBankAccount(Long id) {
+			return new BankAccount(id, amount, accountType, owner);
+		}
+	}
+
+	/**
+	 * @param written owner of every account whose balance was written, keyed by account id
+	 */
+	private record ChunkOutcome(List<ItemResult> results, Map<Long, String> written) {
+	}
+
+	public enum Status {
+		APPLIED, NOT_FOUND, INSUFFICIENT_FUNDS, INVALID, ROLLED_BACK
+	}
+
+	/**
+	 * @param index position of the operation in the request
+	 */
+	public record ItemResult(int index, Status status) {
+	}
+}
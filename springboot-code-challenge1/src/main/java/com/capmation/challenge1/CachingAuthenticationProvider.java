@@ -0,0 +1,106 @@
+package com.capmation.challenge1;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Remembers username/password pairs that recently passed BCrypt verification so HTTP Basic
+ * clients, which send the same credentials on every call, pay for BCrypt once per
+ * {@code ttl} instead of on every request.
+ * <p>
+ * Entries are keyed by an HMAC of the credentials under a random per-process key, so the cache
+ * never holds a password or anything that can be checked offline. Each hit reloads the user and
+ * is only honoured while the stored password hash is unchanged and the account is still
+ * enabled and unlocked; a password change, removal or lock therefore takes effect on the next
+ * request without waiting for the entry to expire.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+	private final AuthenticationProvider delegate;
+	private final UserDetailsService userDetailsService;
+	private final Cache<String, String> verified;
+	private final SecretKeySpec key;
+
+	public CachingAuthenticationProvider(AuthenticationProvider delegate, UserDetailsService userDetailsService,
+			Duration ttl, long maxSize) {
+		this.delegate = delegate;
+		this.userDetailsService = userDetailsService;
+		this.verified = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.key = new SecretKeySpec(secret, "HmacSHA256");
+	}
+
+	@Override
+	public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+		if (authentication.getCredentials() == null) {
+			return delegate.authenticate(authentication);
+		}
+		String cacheKey = cacheKey(authentication.getName(), authentication.getCredentials().toString());
+		String encodedPassword = verified.getIfPresent(cacheKey);
+		if (encodedPassword != null) {
+			UserDetails user = loadUser(authentication.getName());
+			if (user != null && encodedPassword.equals(user.getPassword()) && user.isEnabled()
+					&& user.isAccountNonLocked() && user.isAccountNonExpired() && user.isCredentialsNonExpired()) {
+				return UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+			}
+			verified.invalidate(cacheKey);
+		}
+
+		Authentication result = delegate.authenticate(authentication);
+		// Read the hash now: the ProviderManager erases credentials once this method returns
+		if (result != null && result.getPrincipal() instanceof UserDetails user && user.getPassword() != null) {
+			verified.put(cacheKey, user.getPassword());
+		}
+		return result;
+	}
+
+	@Override
+	public boolean supports(Class<?> authentication) {
+		return delegate.supports(authentication);
+	}
+
+	/**
+	 * Drops every remembered credential, e.g. after a bulk change to the user store.
+	 */
+	public void invalidateAll() {
+		verified.invalidateAll();
+	}
+
+	private UserDetails loadUser(String username) {
+		try {
+			return userDetailsService.loadUserByUsername(username);
+		} catch (UsernameNotFoundException e) {
+			return null;
+		}
+	}
+
+	private String cacheKey(String username, String password) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(key);
+			mac.update(username.getBytes(StandardCharsets.UTF_8));
+			mac.update((byte) 0);
+			return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("HmacSHA256 is not available", e);
+		}
+	}
+}
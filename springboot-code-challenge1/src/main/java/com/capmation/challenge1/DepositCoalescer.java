@@ -0,0 +1,200 @@
+package com.capmation.challenge1;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Combines concurrent deposits to the same account into one {@code UPDATE}. The first deposit
+ * to arrive for an account opens a batch and waits up to {@code window}, or until
+ * {@code maxBatch} deposits have joined, then applies their sum with
+ * {@link OwnerBalances#addToBalance}. Every caller gets the balance right after its own
+ * deposit, as if the batch had been applied one deposit at a time in arrival order. A batch whose
+ * sum would push the balance past {@link Money#MAX_CENTS} falls back to one update per deposit,
+ * so each deposit is accepted or refused on its own.
+ * <p>
+ * Enabled with {@code bankaccounts.coalescing.enabled=true}; it only pays off for accounts that
+ * receive many deposits at once, everyone else just waits for the window.
+ */
+@Component
+@ConditionalOnProperty(name = "bankaccounts.coalescing.enabled", havingValue = "true")
+public class DepositCoalescer {
+
+	private final OwnerBalances ownerBalances;
+	private final long windowNanos;
+	private final int maxBatch;
+
+	private final ConcurrentHashMap<Long, Batch> open = new ConcurrentHashMap<>();
+	private final AtomicLong operations = new AtomicLong();
+	private final AtomicLong updates = new AtomicLong();
+	private final AtomicLong waitedNanos = new AtomicLong();
+	private final AtomicLong maxWaitedNanos = new AtomicLong();
+	private final Timer waited;
+
+	public DepositCoalescer(OwnerBalances ownerBalances, MeterRegistry meterRegistry,
+			@Value("${bankaccounts.coalescing.window:5ms}") Duration window,
+			@Value("${bankaccounts.coalescing.max-batch:64}") int maxBatch) {
+		this.ownerBalances = ownerBalances;
+		this.windowNanos = window.toNanos();
+		this.maxBatch = maxBatch;
+		this.waited = Timer.builder("bankaccounts.coalescing.wait")
+				.description("Time a deposit waited for its batch to be applied")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * @return the account right after this deposit, or {@code null} when it does not exist or the
+	 *         deposit would exceed {@link Money#MAX_CENTS}
+	 */
+	public BankAccount deposit(Long id, long amount, Date dateTime) {
+		Deposit deposit = new Deposit(new DepositRecord(id, amount, dateTime), System.nanoTime(), new CompletableFuture<>());
+		Batch batch;
+		boolean leader;
+		do {
+			Batch created = new Batch();
+			batch = open.putIfAbsent(id, created);
+			leader = batch == null;
+			if (leader) {
+				batch = created;
+			}
+		} while (!batch.add(deposit, maxBatch));
+
+		if (leader) {
+			batch.awaitFull(windowNanos, maxBatch);
+			open.remove(id, batch);
+			apply(id, batch.close());
+		}
+		try {
+			return deposit.result().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a coalesced deposit", e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+		}
+	}
+
+	public CoalescingStats stats() {
+		long ops = operations.get();
+		long writes = updates.get();
+		return new CoalescingStats(ops, writes, writes == 0 ? 0 : (double) ops / writes,
+				ops == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(waitedNanos.get() / ops),
+				TimeUnit.NANOSECONDS.toMicros(maxWaitedNanos.get()));
+	}
+
+	private void apply(Long id, List<Deposit> deposits) {
+		long start = System.nanoTime();
+		long sum = 0;
+		for (Deposit deposit : deposits) {
+			// Stop adding once past MAX_CENTS; every amount is at most MAX_CENTS, so the sum cannot overflow
+			sum = sum > Money.MAX_CENTS ? sum : sum + deposit.record().amount();
+			long waited = start - deposit.enqueuedNanos();
+			waitedNanos.addAndGet(waited);
+			maxWaitedNanos.accumulateAndGet(waited, Math::max);
+			this.waited.record(waited, TimeUnit.NANOSECONDS);
+		}
+		operations.addAndGet(deposits.size());
+		updates.incrementAndGet();
+
+		BankAccount after;
+		try {
+			after = sum <= Money.MAX_CENTS ? ownerBalances.addDeposits(id, deposits.stream().map(Deposit::record).toList())
+					: null;
+			if (after == null && deposits.size() > 1) {
+				updates.addAndGet(deposits.size());
+				for (Deposit deposit : deposits) {
+					deposit.result().complete(ownerBalances.addToBalance(id, deposit.record().amount(),
+							deposit.record().dateTime()));
+				}
+				return;
+			}
+		} catch (RuntimeException e) {
+			deposits.forEach(d -> d.result().completeExceptionally(e));
+			return;
+		}
+		if (after == null) {
+			deposits.get(0).result().complete(null);
+			return;
+		}
+		// Hand out the balances a one-by-one application in arrival order would have produced
+		long balance = after.amount() - sum;
+		for (Deposit deposit : deposits) {
+			balance += deposit.record().amount();
+			deposit.result().complete(new BankAccount(id, balance, after.accountType(), after.owner()));
+		}
+	}
+
+	private static final class Batch {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition full = lock.newCondition();
+		private final List<Deposit> deposits = new ArrayList<>();
+		private boolean closed;
+
+		boolean add(Deposit deposit, int maxBatch) {
+			lock.lock();
+			try {
+				if (closed) {
+					return false;
+				}
+				deposits.add(deposit);
+				if (deposits.size() >= maxBatch) {
+					full.signal();
+				}
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void awaitFull(long windowNanos, int maxBatch) {
+			lock.lock();
+			try {
+				long remaining = windowNanos;
+				while (deposits.size() < maxBatch && remaining > 0) {
+					remaining = full.awaitNanos(remaining);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		List<Deposit> close() {
+			lock.lock();
+			try {
+				closed = true;
+				return deposits;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private record Deposit(DepositRecord record, long enqueuedNanos, CompletableFuture<BankAccount> result) {
+	}
+
+	/**
+	 * @param ratio                   deposits per {@code UPDATE}
+	 * @param avgAddedLatencyMicros   average time a deposit waited for its batch to be applied
+	 * @param maxAddedLatencyMicros   longest such wait
+	 */
+	public record CoalescingStats(long operations, long updates, double ratio, long avgAddedLatencyMicros,
+			long maxAddedLatencyMicros) {
+	}
+}
@@ -0,0 +1,48 @@
+package com.capmation.challenge1;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * Wire formats: JSON as before, plus CBOR ({@code application/cbor}) and Smile
+ * ({@code application/x-jackson-smile}) for callers that ask for them with {@code Accept} and
+ * {@code Content-Type}. The binary mappers are built from Spring Boot's
+ * {@link Jackson2ObjectMapperBuilder}, so they carry the same modules and {@code spring.jackson.*}
+ * settings as the JSON one and the same {@link Money.Cents} handling. The reactive stack stays
+ * JSON only: WebFlux's CBOR codec cannot stream yet, which every listing there does.
+ * <p>
+ * {@link BlackbirdModule} replaces reflective property access and record construction with
+ * generated lambdas in all three; it changes how values are reached, not what is written.
+ */
+@Configuration
+public class JacksonConfig {
+
+	@Bean
+	public Module blackbirdModule() {
+		return new BlackbirdModule();
+	}
+
+	/**
+	 * Replaces the converter Spring MVC would otherwise add with a mapper of its own.
+	 */
+	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+	public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+	}
+
+	@Bean
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+	public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+	}
+}
@@ -0,0 +1,17 @@
+package com.capmation.challenge1;
+
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jdbc.repository.config.EnableJdbcRepositories;
+
+/**
+ * With R2DBC on the classpath too, Spring Data no longer guesses which store a repository
+ * belongs to: every repository except {@link ReactiveBankAccountRepository} is a JDBC one.
+ * Kept out of the application class so test slices that don't load repositories stay unaffected.
+ */
+@Configuration
+@EnableJdbcRepositories(excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE,
+		classes = ReactiveBankAccountRepository.class))
+public class JdbcRepositoriesConfig {
+}
@@ -0,0 +1,33 @@
+package com.capmation.challenge1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in the keyset listing: the (amount, id) of the last row a client has seen. Clients
+ * get it as an opaque base64url string and send it back unchanged.
+ */
+public record KeysetCursor(long amount, Long id) {
+
+	public static KeysetCursor after(BankAccount last) {
+		return new KeysetCursor(last.amount(), last.id());
+	}
+
+	public String encode() {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((amount + ":" + id).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @throws IllegalArgumentException if {@code cursor} was not produced by {@link #encode()}
+	 */
+	public static KeysetCursor decode(String cursor) {
+		String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		int separator = decoded.lastIndexOf(':');
+		if (separator < 0) {
+			throw new IllegalArgumentException("Malformed cursor");
+		}
+		return new KeysetCursor(Long.parseLong(decoded.substring(0, separator)),
+				Long.valueOf(decoded.substring(separator + 1)));
+	}
+}
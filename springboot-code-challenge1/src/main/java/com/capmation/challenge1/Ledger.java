@@ -0,0 +1,436 @@
+package com.capmation.challenge1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import com.capmation.challenge1.LedgerJournal.Entry;
+import com.capmation.challenge1.LedgerJournal.Type;
+import com.capmation.challenge1.TransactionHistory.Transaction;
+import com.capmation.challenge1.TransferService.TransferResult;
+
+/**
+ * Ledger mode: balances live in memory and every mutation is appended to a {@link LedgerJournal}
+ * before it is acknowledged, instead of being written to {@code bank_account} right away.
+ * <p>
+ * A background task checkpoints the balances that became durable since the last run into
+ * {@code bank_account}, together with the sequence number they correspond to and the resulting
+ * change to the owners' totals in {@link OwnerBalances} and the {@link TransactionHistory}
+ * entries of those mutations, and then drops journal segments that are no longer needed. History
+ * entries carry the server time stored in the journal record, so a replayed record produces the
+ * same entry as a live one. On startup the journal records after the last
+ * checkpoint are replayed and checkpointed before any request is served.
+ * <p>
+ * Accounts are loaded from the database on first use. Each one has its own lock, held while its
+ * balance changes and its journal record is queued, so the journal order for an account always
+ * matches the order the changes were applied in.
+ */
+public class Ledger implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(Ledger.class);
+	private static final int CHECKPOINT_CHUNK = 500;
+
+	private final LedgerJournal journal;
+	private final BankAccountRepository bankAccountRepository;
+	private final JdbcTemplate jdbcTemplate;
+	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+	private final OwnerBalances ownerBalances;
+	private final TransactionHistory transactionHistory;
+	private final TransactionTemplate transactionTemplate;
+	private final Duration ackTimeout;
+	private final ScheduledExecutorService checkpointer;
+	private final Timer lockWait;
+
+	private final ConcurrentHashMap<Long, LedgerAccount> accounts = new ConcurrentHashMap<>();
+	private volatile boolean accepting;
+	private volatile boolean halted;
+
+	// Balances and history entries made durable since the last checkpoint, guarded by checkpointLock
+	private final ReentrantLock checkpointLock = new ReentrantLock();
+	private final Map<Long, Long> dirty = new HashMap<>();
+	private final List<Transaction> unrecorded = new ArrayList<>();
+	private long durableSeq;
+	private long checkpointedSeq;
+
+	public Ledger(LedgerJournal journal, BankAccountRepository bankAccountRepository, JdbcTemplate jdbcTemplate,
+			OwnerBalances ownerBalances, TransactionHistory transactionHistory, TransactionTemplate transactionTemplate,
+			Duration checkpointInterval, Duration ackTimeout, MeterRegistry meterRegistry) throws IOException {
+		this.journal = journal;
+		this.bankAccountRepository = bankAccountRepository;
+		this.jdbcTemplate = jdbcTemplate;
+		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+		this.ownerBalances = ownerBalances;
+		this.transactionHistory = transactionHistory;
+		this.transactionTemplate = transactionTemplate;
+		this.ackTimeout = ackTimeout;
+		this.lockWait = Timer.builder("bankaccounts.lock.wait").tag("path", "ledger")
+				.description("Time to acquire the locks a mutation needs")
+				.register(meterRegistry);
+
+		recover();
+		journal.start(this::onDurable);
+		accepting = true;
+
+		this.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "ledger-checkpointer"));
+		long period = checkpointInterval.toMillis();
+		checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the account after the deposit, or {@code null} when it does not exist or the
+	 *         balance would exceed {@link Money#MAX_CENTS}
+	 */
+	public BankAccount deposit(Long id, long amount, Date dateTime) {
+		LedgerAccount account = account(id);
+		if (account == null) {
+			return null;
+		}
+		BankAccount after;
+		CompletableFuture<Long> durable;
+		lock(account);
+		try {
+			if (!Money.canAdd(account.balance, amount)) {
+				return null;
+			}
+			account.balance += amount;
+			after = account.toBankAccount(id);
+			durable = journal.append(new Entry(0, Type.DEPOSIT, id, amount, account.balance, 0, 0, recordedAt(), millis(dateTime)));
+		} finally {
+			account.lock.unlock();
+		}
+		awaitDurable(durable);
+		return after;
+	}
+
+	/**
+	 * @return the account after the withdrawal, or {@code null} when it does not exist, belongs
+	 *         to somebody else or does not hold enough money
+	 */
+	public BankAccount withdraw(Long id, String owner, long amount, Date dateTime) {
+		LedgerAccount account = account(id);
+		if (account == null || !account.owner.equalsIgnoreCase(owner)) {
+			return null;
+		}
+		BankAccount after;
+		CompletableFuture<Long> durable;
+		lock(account);
+		try {
+			if (account.balance < amount) {
+				return null;
+			}
+			account.balance -= amount;
+			after = account.toBankAccount(id);
+			durable = journal.append(new Entry(0, Type.WITHDRAWAL, id, amount, account.balance, 0, 0, recordedAt(),
+					millis(dateTime)));
+		} finally {
+			account.lock.unlock();
+		}
+		awaitDurable(durable);
+		return after;
+	}
+
+	public TransferResult transfer(Long sourceId, Long destinationId, long amount, String owner, Date dateTime) {
+		if (sourceId == null || destinationId == null || sourceId.equals(destinationId) || amount <= 0) {
+			return TransferResult.of(TransferResult.Status.INVALID);
+		}
+		LedgerAccount source = account(sourceId);
+		LedgerAccount destination = account(destinationId);
+		if (source == null || destination == null || !source.owner.equalsIgnoreCase(owner)) {
+			return TransferResult.of(TransferResult.Status.NOT_FOUND);
+		}
+		// Same ascending id order as TransferService
+		LedgerAccount first = sourceId < destinationId ? source : destination;
+		LedgerAccount second = sourceId < destinationId ? destination : source;
+		TransferResult result;
+		CompletableFuture<Long> durable;
+		lock(first);
+		lock(second);
+		try {
+			if (source.balance < amount) {
+				return TransferResult.of(TransferResult.Status.INSUFFICIENT_FUNDS);
+			}
+			if (!Money.canAdd(destination.balance, amount)) {
+				return TransferResult.of(TransferResult.Status.INVALID);
+			}
+			source.balance -= amount;
+			destination.balance += amount;
+			result = new TransferResult(TransferResult.Status.COMPLETED, source.toBankAccount(sourceId),
+					destination.toBankAccount(destinationId));
+			durable = journal.append(new Entry(0, Type.TRANSFER, sourceId, amount, source.balance, destinationId,
+					destination.balance, recordedAt(), millis(dateTime)));
+		} finally {
+			second.lock.unlock();
+			first.lock.unlock();
+		}
+		awaitDurable(durable);
+		return result;
+	}
+
+	/**
+	 * Replaces the amount of {@code bankAccount}, as read from the database, with the ledger
+	 * balance when the ledger holds a newer one.
+	 */
+	public BankAccount overlay(BankAccount bankAccount) {
+		LedgerAccount account = bankAccount == null ? null : accounts.get(bankAccount.id());
+		if (account == null) {
+			return bankAccount;
+		}
+		account.lock.lock();
+		try {
+			return new BankAccount(bankAccount.id(), account.balance, bankAccount.accountType(), bankAccount.owner());
+		} finally {
+			account.lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes every balance that became durable since the last checkpoint to {@code bank_account}.
+	 */
+	public void checkpoint() throws IOException {
+		Map<Long, Long> balances;
+		List<Transaction> entries;
+		long seq;
+		checkpointLock.lock();
+		try {
+			if (durableSeq == checkpointedSeq) {
+				return;
+			}
+			balances = new HashMap<>(dirty);
+			dirty.clear();
+			entries = new ArrayList<>(unrecorded);
+			unrecorded.clear();
+			seq = durableSeq;
+		} finally {
+			checkpointLock.unlock();
+		}
+		try {
+			writeCheckpoint(balances, entries, seq);
+		} catch (RuntimeException e) {
+			checkpointLock.lock();
+			try {
+				// Keep anything that changed again in the meantime
+				balances.forEach(dirty::putIfAbsent);
+				unrecorded.addAll(0, entries);
+			} finally {
+				checkpointLock.unlock();
+			}
+			throw e;
+		}
+		checkpointedSeq = seq;
+		journal.deleteUpTo(seq);
+	}
+
+	public LedgerJournal.JournalStats journalStats() {
+		return journal.stats();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (halted) {
+			return;
+		}
+		accepting = false;
+		checkpointer.shutdown();
+		try {
+			checkpointer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		journal.close();
+		checkpoint();
+	}
+
+	/**
+	 * Stops everything without writing a checkpoint, as a crash would.
+	 */
+	void halt() throws IOException {
+		halted = true;
+		accepting = false;
+		checkpointer.shutdownNow();
+		journal.halt();
+	}
+
+	private void recover() throws IOException {
+		List<Long> checkpoint = jdbcTemplate.queryForList("SELECT seq FROM ledger_checkpoint WHERE id = 1", Long.class);
+		long lastCheckpoint = checkpoint.isEmpty() ? 0 : checkpoint.get(0);
+		Map<Long, Long> replayed = new HashMap<>();
+		List<Transaction> entries = new ArrayList<>();
+		long lastSeq = journal.recover(lastCheckpoint, entry -> {
+			replayed.put(entry.accountId(), entry.balanceAfter());
+			if (entry.type() == Type.TRANSFER) {
+				replayed.put(entry.counterpartyId(), entry.counterpartyBalanceAfter());
+			}
+			entries.addAll(toHistory(entry));
+		});
+		if (lastSeq > lastCheckpoint) {
+			log.info("Replayed journal records {} to {} into {} accounts", lastCheckpoint + 1, lastSeq, replayed.size());
+			writeCheckpoint(replayed, entries, lastSeq);
+		}
+		durableSeq = lastSeq;
+		checkpointedSeq = lastSeq;
+	}
+
+	private void writeCheckpoint(Map<Long, Long> balances, List<Transaction> entries, long seq) {
+		List<Object[]> updates = new ArrayList<>(balances.size());
+		balances.forEach((id, balance) -> updates.add(new Object[] { balance, id }));
+		transactionTemplate.executeWithoutResult(tx -> {
+			SortedMap<OwnerBalances.Key, OwnerBalances.Delta> deltas = lockAndDiff(balances);
+			jdbcTemplate.batchUpdate("UPDATE bank_account SET amount = ? WHERE id = ?", updates);
+			ownerBalances.applyAll(deltas);
+			transactionHistory.record(entries);
+			jdbcTemplate.update("MERGE INTO ledger_checkpoint (id, seq) KEY (id) VALUES (1, ?)", seq);
+		});
+	}
+
+	/**
+	 * Locks the rows about to be checkpointed, in id order, and works out how much each owner's
+	 * totals move when they take the new balances.
+	 */
+	private SortedMap<OwnerBalances.Key, OwnerBalances.Delta> lockAndDiff(Map<Long, Long> balances) {
+		SortedMap<OwnerBalances.Key, OwnerBalances.Delta> deltas = new TreeMap<>();
+		List<Long> ids = new ArrayList<>(new TreeMap<>(balances).keySet());
+		for (int from = 0; from < ids.size(); from += CHECKPOINT_CHUNK) {
+			namedParameterJdbcTemplate.query(
+					"SELECT id, amount, account_type, owner FROM bank_account WHERE id IN (:ids) ORDER BY id FOR UPDATE",
+					Map.of("ids", ids.subList(from, Math.min(from + CHECKPOINT_CHUNK, ids.size()))),
+					rs -> {
+						OwnerBalances.Delta.add(deltas, new OwnerBalances.Key(rs.getString("owner"), rs.getString("account_type")),
+								0, balances.get(rs.getLong("id")) - rs.getLong("amount"));
+					});
+		}
+		return deltas;
+	}
+
+	private void checkpointQuietly() {
+		try {
+			checkpoint();
+		} catch (IOException | RuntimeException e) {
+			log.warn("Ledger checkpoint failed, will retry", e);
+		}
+	}
+
+	private void onDurable(List<Entry> entries) {
+		checkpointLock.lock();
+		try {
+			for (Entry entry : entries) {
+				dirty.put(entry.accountId(), entry.balanceAfter());
+				if (entry.type() == Type.TRANSFER) {
+					dirty.put(entry.counterpartyId(), entry.counterpartyBalanceAfter());
+				}
+				unrecorded.addAll(toHistory(entry));
+				durableSeq = entry.seq();
+			}
+		} finally {
+			checkpointLock.unlock();
+		}
+	}
+
+	private LedgerAccount account(Long id) {
+		if (!accepting) {
+			throw new IllegalStateException("Ledger is not accepting mutations");
+		}
+		LedgerAccount account = accounts.get(id);
+		if (account != null) {
+			return account;
+		}
+		BankAccount row = bankAccountRepository.findById(id).orElse(null);
+		if (row == null) {
+			return null;
+		}
+		// If another request loaded it meanwhile, keep that one: it may already have changed
+		return accounts.computeIfAbsent(id, k -> new LedgerAccount(row.amount(), row.accountType(), row.owner()));
+	}
+
+	/**
+	 * Only contended acquisitions are timed, so the uncontended path reads no clock.
+	 */
+	private void lock(LedgerAccount account) {
+		if (account.lock.tryLock()) {
+			return;
+		}
+		long start = System.nanoTime();
+		account.lock.lock();
+		lockWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	}
+
+	private void awaitDurable(CompletableFuture<Long> durable) {
+		try {
+			durable.get(ackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the journal", e);
+		} catch (ExecutionException | TimeoutException e) {
+			// The balance in memory already includes this change, and the next record written for
+			// the account would make it durable. Stop here and let a restart recover from the journal.
+			accepting = false;
+			log.error("Journal write did not complete, ledger stopped accepting mutations", e);
+			throw new IllegalStateException("Journal write did not complete", e);
+		}
+	}
+
+	private static List<Transaction> toHistory(Entry entry) {
+		Instant recordedAt = Instant.ofEpochMilli(entry.recordedAt());
+		Date dateTime = entry.dateTime() == Entry.NO_DATE_TIME ? null : new Date(entry.dateTime());
+		return switch (entry.type()) {
+			case DEPOSIT -> List.of(new Transaction(null, entry.accountId(), Transaction.Type.DEPOSIT, entry.amount(),
+					entry.balanceAfter(), null, recordedAt, dateTime));
+			case WITHDRAWAL -> List.of(new Transaction(null, entry.accountId(), Transaction.Type.WITHDRAWAL, entry.amount(),
+					entry.balanceAfter(), null, recordedAt, dateTime));
+			case TRANSFER -> List.of(
+					new Transaction(null, entry.accountId(), Transaction.Type.TRANSFER_OUT, entry.amount(),
+							entry.balanceAfter(), entry.counterpartyId(), recordedAt, dateTime),
+					new Transaction(null, entry.counterpartyId(), Transaction.Type.TRANSFER_IN, entry.amount(),
+							entry.counterpartyBalanceAfter(), entry.accountId(), recordedAt, dateTime));
+		};
+	}
+
+	private long recordedAt() {
+		return transactionHistory.now().toEpochMilli();
+	}
+
+	private static long millis(Date dateTime) {
+		return dateTime != null ? dateTime.getTime() : Entry.NO_DATE_TIME;
+	}
+
+	private static final class LedgerAccount {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final String accountType;
+		private final String owner;
+		private long balance;
+
+		LedgerAccount(long balance, String accountType, String owner) {
+			this.balance = balance;
+			this.accountType = accountType;
+			this.owner = owner;
+		}
+
+		BankAccount toBankAccount(Long id) {
+			return new BankAccount(id, balance, accountType, owner);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.capmation.challenge1;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Enables ledger mode ({@code bankaccounts.ledger.enabled=true}): deposits, withdrawals and
+ * transfers go through {@link Ledger} instead of updating {@code bank_account} directly.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bankaccounts.ledger.enabled", havingValue = "true")
+public class LedgerConfig {
+
+    @Bean(destroyMethod = "close")
+    public Ledger ledger(BankAccountRepository bankAccountRepository, JdbcTemplate jdbcTemplate,
+            OwnerBalances ownerBalances, TransactionHistory transactionHistory, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${bankaccounts.ledger.directory:ledger}") Path directory,
+            @Value("${bankaccounts.ledger.segment-size:64MB}") DataSize segmentSize,
+            @Value("${bankaccounts.ledger.group-max-entries:512}") int groupMaxEntries,
+            @Value("${bankaccounts.ledger.group-max-delay:2ms}") Duration groupMaxDelay,
+            @Value("${bankaccounts.ledger.checkpoint-interval:1s}") Duration checkpointInterval,
+            @Value("${bankaccounts.ledger.ack-timeout:5s}") Duration ackTimeout) throws IOException {
+        LedgerJournal journal = new LedgerJournal(directory, Math.toIntExact(segmentSize.toBytes()), groupMaxEntries, groupMaxDelay);
+        return new Ledger(journal, bankAccountRepository, jdbcTemplate, ownerBalances, transactionHistory,
+                new TransactionTemplate(transactionManager), checkpointInterval, ackTimeout, meterRegistry);
+    }
+}
@@ -0,0 +1,352 @@
+package com.capmation.challenge1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of balance mutations, stored as fixed-size records in memory-mapped
+ * segment files named after the sequence number of their first record.
+ * <p>
+ * Appends are queued and written by a single thread in groups: it takes whatever is waiting,
+ * keeps collecting for up to {@code groupMaxDelay} or until {@code groupMaxEntries} are
+ * pending, writes them and forces the segment to disk once for the whole group. The futures
+ * returned by {@link #append(Entry)} complete only after that force, so a caller that waits
+ * for them never acknowledges a mutation that could be lost.
+ * <p>
+ * Every record carries a CRC and the next sequence number, so recovery stops at the first torn
+ * or stale record and clears the rest of the segment before new records are written there.
+ */
+public class LedgerJournal implements Closeable {
+
+	static final int RECORD_SIZE = 8 + 1 + 8 + 8 + 8 + 8 + 8 + 8 + 8 + 4;
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private final Path directory;
+	private final int segmentSize;
+	private final int groupMaxEntries;
+	private final long groupMaxDelayNanos;
+
+	private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+	private final AtomicLong groups = new AtomicLong();
+	private final AtomicLong entries = new AtomicLong();
+	private volatile boolean running;
+	private Thread writer;
+	private Consumer<List<Entry>> onDurable;
+
+	// Only touched by the writer thread once started
+	private FileChannel channel;
+	private MappedByteBuffer segment;
+	private long lastSeq;
+
+	public LedgerJournal(Path directory, int segmentSize, int groupMaxEntries, Duration groupMaxDelay) {
+		if (segmentSize < RECORD_SIZE) {
+			throw new IllegalArgumentException("Segment size must hold at least one record");
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+		this.groupMaxEntries = groupMaxEntries;
+		this.groupMaxDelayNanos = groupMaxDelay.toNanos();
+	}
+
+	/**
+	 * Reads every intact record and passes those after {@code afterSeq} to {@code consumer}.
+	 * Must be called once, before {@link #start}.
+	 *
+	 * @return the sequence number of the last intact record, or {@code afterSeq} if it is higher
+	 */
+	public long recover(long afterSeq, Consumer<Entry> consumer) throws IOException {
+		Files.createDirectories(directory);
+		List<Path> segments = segments();
+		long expected = -1;
+		for (int i = 0; i < segments.size(); i++) {
+			Path path = segments.get(i);
+			long firstSeq = firstSeq(path);
+			if (expected != -1 && firstSeq != expected) {
+				throw new IllegalStateException("Journal segment " + path + " does not follow the previous one");
+			}
+			expected = firstSeq;
+			boolean last = i == segments.size() - 1;
+			try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedByteBuffer buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+				while (buffer.remaining() >= RECORD_SIZE) {
+					Entry entry = read(buffer, expected);
+					if (entry == null) {
+						break;
+					}
+					if (entry.seq() > afterSeq) {
+						consumer.accept(entry);
+					}
+					expected++;
+				}
+				if (buffer.remaining() >= RECORD_SIZE) {
+					if (!last) {
+						throw new IllegalStateException("Journal segment " + path + " is corrupt before its end");
+					}
+					// Whatever follows the last intact record was never acknowledged
+					while (buffer.hasRemaining()) {
+						buffer.put((byte) 0);
+					}
+					buffer.force();
+				}
+			}
+		}
+		lastSeq = Math.max(expected - 1, afterSeq);
+		return lastSeq;
+	}
+
+	/**
+	 * Starts the writer thread. {@code onDurable} is called from it with every group right after
+	 * the group has been forced to disk, in sequence order.
+	 */
+	public void start(Consumer<List<Entry>> onDurable) throws IOException {
+		this.onDurable = onDurable;
+		List<Path> segments = segments();
+		if (segments.isEmpty() || firstSeq(segments.get(segments.size() - 1)) > lastSeq + 1) {
+			openSegment(lastSeq + 1);
+		} else {
+			Path current = segments.get(segments.size() - 1);
+			channel = FileChannel.open(current, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			segment.position((int) ((lastSeq + 1 - firstSeq(current)) * RECORD_SIZE));
+		}
+		running = true;
+		writer = new Thread(this::writeLoop, "ledger-journal-writer");
+		writer.start();
+	}
+
+	/**
+	 * Queues {@code entry}; the returned future completes with its sequence number once it is on disk.
+	 */
+	public CompletableFuture<Long> append(Entry entry) {
+		if (!running) {
+			return CompletableFuture.failedFuture(new IllegalStateException("Journal is closed"));
+		}
+		Pending pending = new Pending(entry, new CompletableFuture<>());
+		queue.add(pending);
+		return pending.durable();
+	}
+
+	/**
+	 * Deletes segments that only hold records up to {@code seq}. The segment being written is kept.
+	 */
+	public void deleteUpTo(long seq) throws IOException {
+		List<Path> segments = segments();
+		for (int i = 0; i < segments.size() - 1; i++) {
+			if (firstSeq(segments.get(i + 1)) <= seq + 1) {
+				Files.deleteIfExists(segments.get(i));
+			}
+		}
+	}
+
+	public JournalStats stats() {
+		return new JournalStats(groups.get(), entries.get(), queue.size());
+	}
+
+	/**
+	 * Writes everything already queued, then stops the writer thread.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		if (writer != null) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Stops the writer thread without writing what is still queued, as a crash would.
+	 */
+	void halt() throws IOException {
+		running = false;
+		if (writer != null) {
+			writer.interrupt();
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	private void writeLoop() {
+		List<Pending> group = new ArrayList<>(groupMaxEntries);
+		while (running || !queue.isEmpty()) {
+			try {
+				Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				group.add(first);
+				queue.drainTo(group, groupMaxEntries - group.size());
+				long deadline = System.nanoTime() + groupMaxDelayNanos;
+				long remaining;
+				while (running && group.size() < groupMaxEntries && (remaining = deadline - System.nanoTime()) > 0) {
+					Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					group.add(next);
+					queue.drainTo(group, groupMaxEntries - group.size());
+				}
+				writeGroup(group);
+			} catch (InterruptedException e) {
+				if (!running) {
+					return;
+				}
+			} finally {
+				group.clear();
+			}
+		}
+	}
+
+	private void writeGroup(List<Pending> group) {
+		List<Entry> written = new ArrayList<>(group.size());
+		try {
+			for (Pending pending : group) {
+				if (segment.remaining() < RECORD_SIZE) {
+					segment.force();
+					channel.close();
+					openSegment(lastSeq + 1);
+				}
+				Entry entry = pending.entry().withSeq(++lastSeq);
+				write(segment, entry);
+				written.add(entry);
+			}
+			segment.force();
+		} catch (IOException | RuntimeException e) {
+			group.forEach(p -> p.durable().completeExceptionally(e));
+			return;
+		}
+		groups.incrementAndGet();
+		entries.addAndGet(group.size());
+		onDurable.accept(written);
+		for (int i = 0; i < group.size(); i++) {
+			group.get(i).durable().complete(written.get(i).seq());
+		}
+	}
+
+	private void openSegment(long firstSeq) throws IOException {
+		Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+					.sorted()
+					.toList();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static long firstSeq(Path segment) {
+		String name = segment.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	private static void write(MappedByteBuffer buffer, Entry entry) {
+		int start = buffer.position();
+		buffer.putLong(entry.seq())
+				.put((byte) entry.type().ordinal())
+				.putLong(entry.accountId())
+				.putLong(entry.amount())
+				.putLong(entry.balanceAfter())
+				.putLong(entry.counterpartyId())
+				.putLong(entry.counterpartyBalanceAfter())
+				.putLong(entry.recordedAt())
+				.putLong(entry.dateTime());
+		buffer.putInt(crc(buffer, start));
+	}
+
+	/**
+	 * @return the record at the buffer position, or {@code null} if it is blank, torn or out of sequence
+	 */
+	private static Entry read(MappedByteBuffer buffer, long expectedSeq) {
+		int start = buffer.position();
+		long seq = buffer.getLong(start);
+		if (seq != expectedSeq || buffer.getInt(start + RECORD_SIZE - 4) != crc(buffer, start)) {
+			return null;
+		}
+		buffer.position(start + 8);
+		int type = buffer.get();
+		if (type < 0 || type >= Type.values().length) {
+			buffer.position(start);
+			return null;
+		}
+		Entry entry = new Entry(seq, Type.values()[type], buffer.getLong(), buffer.getLong(), buffer.getLong(),
+				buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+		buffer.position(start + RECORD_SIZE);
+		return entry;
+	}
+
+	private static int crc(MappedByteBuffer buffer, int start) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.slice(start, RECORD_SIZE - 4));
+		return (int) crc.getValue();
+	}
+
+	public enum Type {
+		DEPOSIT, WITHDRAWAL, TRANSFER
+	}
+
+	/**
+	 * One mutation. Balances are stored after the mutation was applied, so replaying a record
+	 * means setting those balances and does not depend on the state it started from. Amounts and
+	 * balances are in cents (see {@link Money}).
+	 *
+	 * @param counterpartyId destination of a transfer, {@code 0} otherwise
+	 * @param recordedAt     server time of the mutation in epoch milliseconds, the same whether
+	 *                       the record is checkpointed live or replayed
+	 * @param dateTime       time given by the client in epoch milliseconds, or
+	 *                       {@link #NO_DATE_TIME}
+	 */
+	public record Entry(long seq, Type type, long accountId, long amount, long balanceAfter, long counterpartyId,
+			long counterpartyBalanceAfter, long recordedAt, long dateTime) {
+
+		public static final long NO_DATE_TIME = Long.MIN_VALUE;
+
+		Entry withSeq(long seq) {
+			return new Entry(seq, type, accountId, amount, balanceAfter, counterpartyId, counterpartyBalanceAfter,
+					recordedAt, dateTime);
+		}
+	}
+
+	/**
+	 * @param pending entries queued but not yet written
+	 */
+	public record JournalStats(long groups, long entries, int pending) {
+	}
+
+	private record Pending(Entry entry, CompletableFuture<Long> durable) {
+	}
+}
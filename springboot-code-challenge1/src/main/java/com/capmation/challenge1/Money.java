@@ -0,0 +1,116 @@
+package com.capmation.challenge1;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Amounts are whole cents in a {@code long}, both in memory and in the {@code AMOUNT BIGINT}
+ * column, so arithmetic is exact and never boxes. In JSON they stay decimal numbers with two
+ * fractional digits ({@code 4700.50}); fields marked {@link Cents} are converted on the way in
+ * and out.
+ * <p>
+ * No amount or balance may exceed {@link #MAX_CENTS}. That keeps the sum of any two of them
+ * inside a {@code long}, so a balance check of the form {@code balance <= MAX_CENTS - amount}
+ * cannot overflow.
+ */
+public final class Money {
+
+	public static final long MAX_CENTS = 100_000_000_000_000_000L;
+
+	private Money() {
+	}
+
+	/**
+	 * @throws IllegalArgumentException if {@code value} has more than two decimals or its
+	 *                                  magnitude exceeds {@link #MAX_CENTS}
+	 */
+	public static long toCents(BigDecimal value) {
+		BigDecimal cents = value.movePointRight(2);
+		if (cents.signum() != 0 && cents.stripTrailingZeros().scale() > 0) {
+			throw new IllegalArgumentException("Amounts cannot have more than two decimals");
+		}
+		if (cents.abs().compareTo(BigDecimal.valueOf(MAX_CENTS)) > 0) {
+			throw new IllegalArgumentException("Amount is out of range");
+		}
+		return cents.longValue();
+	}
+
+	public static BigDecimal toDecimal(long cents) {
+		return BigDecimal.valueOf(cents, 2);
+	}
+
+	/**
+	 * @return whether {@code balance} can receive {@code amount} without exceeding {@link #MAX_CENTS}
+	 */
+	public static boolean canAdd(long balance, long amount) {
+		return balance <= MAX_CENTS - amount;
+	}
+
+	/**
+	 * Marks a {@code long} cents field that is written and read as a decimal amount in JSON.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER, ElementType.RECORD_COMPONENT })
+	@JacksonAnnotationsInside
+	@JsonSerialize(using = Serializer.class)
+	@JsonDeserialize(using = Deserializer.class)
+	public @interface Cents {
+	}
+
+	static final class Serializer extends StdSerializer<Long> {
+
+		Serializer() {
+			super(Long.class);
+		}
+
+		@Override
+		public void serialize(Long cents, JsonGenerator generator, SerializerProvider provider) throws IOException {
+			generator.writeNumber(toDecimal(cents));
+		}
+	}
+
+	static final class Deserializer extends StdDeserializer<Long> {
+
+		Deserializer() {
+			super(Long.class);
+		}
+
+		@Override
+		public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+			JsonToken token = parser.currentToken();
+			BigDecimal value;
+			if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+				// Parsed from the original text, so 0.1 stays exactly 0.1
+				value = parser.getDecimalValue();
+			} else if (token == JsonToken.VALUE_STRING) {
+				try {
+					value = new BigDecimal(parser.getText().trim());
+				} catch (NumberFormatException e) {
+					return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), "not a decimal amount");
+				}
+			} else {
+				return (Long) context.handleUnexpectedToken(Long.class, parser);
+			}
+			try {
+				return toCents(value);
+			} catch (IllegalArgumentException e) {
+				return (Long) context.handleWeirdNumberValue(Long.class, value, e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.capmation.challenge1;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.capmation.challenge1.Money.Cents;
+import com.capmation.challenge1.OwnerBalances.Delta;
+
+/**
+ * Rebuilds {@code owner_balance} from {@code bank_account} and reports every row that had
+ * drifted. It runs once on startup, before the web server takes requests, which also fills the
+ * table for accounts that were inserted behind the application's back, and then every
+ * {@code bankaccounts.aggregates.reconcile-interval} on the application's task scheduler.
+ * <p>
+ * Owners are checked one at a time, each in its own short transaction: their aggregate rows are
+ * locked first, so any writer that already moved them has committed its account change too and
+ * any writer that has not will wait, and then their accounts are summed through the owner index.
+ */
+@Component
+public class OwnerBalanceReconciler implements SmartLifecycle {
+
+	private static final Logger log = LoggerFactory.getLogger(OwnerBalanceReconciler.class);
+
+	// @Scheduled only reads ISO-8601 or milliseconds, the setting is a duration like the others ("1h")
+	private static final String INTERVAL_MILLIS = "#{T(org.springframework.boot.convert.DurationStyle)"
+			+ ".detectAndParse('${bankaccounts.aggregates.reconcile-interval:1h}').toMillis()}";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionRetrier transactionRetrier;
+
+	private final AtomicLong runs = new AtomicLong();
+	private final AtomicLong drifted = new AtomicLong();
+	private volatile Report lastReport;
+	private volatile boolean running;
+
+	public OwnerBalanceReconciler(JdbcTemplate jdbcTemplate, TransactionRetrier transactionRetrier) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionRetrier = transactionRetrier;
+	}
+
+	@Override
+	public void start() {
+		// Not counted as drift: rows are expected to be missing the first time
+		Report initial = rebuild();
+		log.info("Owner balances built for {} owners, {} rows written", initial.owners(), initial.drifts().size());
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Ahead of the web server, which starts in a late phase.
+	 */
+	@Override
+	public int getPhase() {
+		return 0;
+	}
+
+	public Report reconcile() {
+		Report report = rebuild();
+		runs.incrementAndGet();
+		drifted.addAndGet(report.drifts().size());
+		lastReport = report;
+		return report;
+	}
+
+	/**
+	 * @return the last scheduled or requested run, {@code null} before the first one
+	 */
+	public Report lastReport() {
+		return lastReport;
+	}
+
+	public ReconciliationStats stats() {
+		return new ReconciliationStats(runs.get(), drifted.get());
+	}
+
+	private Report rebuild() {
+		List<String> owners = jdbcTemplate.queryForList(
+				"SELECT DISTINCT owner FROM bank_account UNION SELECT owner FROM owner_balance", String.class);
+		List<Drift> drifts = new ArrayList<>();
+		for (String owner : owners) {
+			drifts.addAll(transactionRetrier.execute(tx -> reconcileOwner(owner)));
+		}
+		return new Report(Instant.now(), owners.size(), drifts);
+	}
+
+	private List<Drift> reconcileOwner(String owner) {
+		Map<String, Delta> recorded = new HashMap<>();
+		jdbcTemplate.query("SELECT account_type, accounts, total FROM owner_balance WHERE owner = ? FOR UPDATE",
+				rs -> {
+					recorded.put(rs.getString("account_type"), new Delta(rs.getLong("accounts"), rs.getLong("total")));
+				}, owner);
+		Map<String, Delta> actual = new HashMap<>();
+		jdbcTemplate.query("SELECT account_type, COUNT(*) AS accounts, SUM(amount) AS total FROM bank_account "
+				+ "WHERE owner = ? GROUP BY account_type",
+				rs -> {
+					actual.put(rs.getString("account_type"), new Delta(rs.getLong("accounts"), rs.getLong("total")));
+				}, owner);
+
+		Set<String> types = new HashSet<>(recorded.keySet());
+		types.addAll(actual.keySet());
+		List<Drift> drifts = new ArrayList<>();
+		for (String type : types) {
+			Delta expected = actual.getOrDefault(type, new Delta(0, 0));
+			Delta found = recorded.get(type);
+			if (expected.equals(found) || (found == null && expected.accounts() == 0)) {
+				continue;
+			}
+			drifts.add(new Drift(owner, type, expected.accounts(), expected.total(),
+					found == null ? 0 : found.accounts(), found == null ? 0 : found.total()));
+			jdbcTemplate.update("MERGE INTO owner_balance (owner, account_type, accounts, total) "
+					+ "KEY (owner, account_type) VALUES (?, ?, ?, ?)", owner, type, expected.accounts(), expected.total());
+		}
+		return drifts;
+	}
+
+	@Scheduled(initialDelayString = INTERVAL_MILLIS, fixedDelayString = INTERVAL_MILLIS)
+	void reconcileQuietly() {
+		try {
+			Report report = reconcile();
+			if (!report.drifts().isEmpty()) {
+				log.warn("Owner balances had drifted and were rebuilt: {}", report.drifts());
+			}
+		} catch (RuntimeException e) {
+			log.warn("Owner balance reconciliation failed, will retry", e);
+		}
+	}
+
+	/**
+	 * @param finishedAt when the run completed
+	 * @param owners     owners that were checked
+	 * @param drifts     aggregate rows that did not match {@code bank_account} and were rewritten
+	 */
+	public record Report(Instant finishedAt, int owners, List<Drift> drifts) {
+	}
+
+	/**
+	 * An aggregate row as it should have been ({@code expected*}, from {@code bank_account}) and as
+	 * it was ({@code recorded*}).
+	 */
+	public record Drift(String owner, String accountType, long expectedAccounts, @Cents long expectedTotal,
+			long recordedAccounts, @Cents long recordedTotal) {
+	}
+
+	/**
+	 * @param runs    reconciliations completed, not counting the initial build on startup
+	 * @param drifted aggregate rows found out of date over all runs
+	 */
+	public record ReconciliationStats(long runs, long drifted) {
+	}
+}
@@ -0,0 +1,203 @@
+package com.capmation.challenge1;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.capmation.challenge1.Money.Cents;
+import com.capmation.challenge1.TransactionHistory.Transaction;
+
+/**
+ * Keeps {@code owner_balance}, the number of accounts and the total balance per owner and
+ * account type, up to date in the same transaction as every change to {@code bank_account}, so
+ * an owner's summary is read from a handful of rows instead of summing all their accounts.
+ * <p>
+ * Every writer locks the account rows it changes first and the aggregate rows after, in
+ * {@link Key} order, so aggregate updates never deadlock with each other or with the ordered
+ * account locks taken by {@link TransferService} and {@link BatchOperationService}.
+ * {@link OwnerBalanceReconciler} rebuilds the table from {@code bank_account} and reports any
+ * drift. Deposits and withdrawals are also written to {@link TransactionHistory} in that
+ * transaction.
+ */
+@Service
+public class OwnerBalances {
+
+	private static final String UPDATE_SQL = "UPDATE owner_balance SET accounts = accounts + ?, total = total + ? "
+			+ "WHERE owner = ? AND account_type = ?";
+	private static final String INSERT_SQL = "INSERT INTO owner_balance (owner, account_type, accounts, total) "
+			+ "VALUES (?, ?, ?, ?)";
+
+	private final BankAccountRepository bankAccountRepository;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionHistory transactionHistory;
+
+	public OwnerBalances(BankAccountRepository bankAccountRepository, JdbcTemplate jdbcTemplate,
+			TransactionHistory transactionHistory) {
+		this.bankAccountRepository = bankAccountRepository;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionHistory = transactionHistory;
+	}
+
+	/**
+	 * {@link BankAccountRepository#addToBalance} that also moves the owner's total and records
+	 * the deposit.
+	 */
+	@Transactional
+	public BankAccount addToBalance(Long id, long delta, Date dateTime) {
+		return addDeposits(id, List.of(new DepositRecord(id, delta, dateTime)));
+	}
+
+	/**
+	 * Applies several deposits to one account with a single {@code UPDATE} of their sum, and
+	 * records each of them with the balance right after it, in list order.
+	 *
+	 * @return the account after the last deposit, or {@code null} when it does not exist or the
+	 *         sum would exceed {@link Money#MAX_CENTS}
+	 */
+	@Transactional
+	public BankAccount addDeposits(Long id, List<DepositRecord> deposits) {
+		long sum = 0;
+		for (DepositRecord deposit : deposits) {
+			// Stop adding once past MAX_CENTS; every amount is at most MAX_CENTS, so the sum cannot overflow
+			sum = sum > Money.MAX_CENTS ? sum : sum + deposit.amount();
+		}
+		BankAccount after = sum <= Money.MAX_CENTS ? bankAccountRepository.addToBalance(id, sum) : null;
+		if (after == null) {
+			return null;
+		}
+		apply(Key.of(after), 0, sum);
+		Instant now = transactionHistory.now();
+		List<Transaction> entries = new ArrayList<>(deposits.size());
+		long balance = after.amount() - sum;
+		for (DepositRecord deposit : deposits) {
+			balance += deposit.amount();
+			entries.add(Transaction.deposit(new BankAccount(id, balance, after.accountType(), after.owner()),
+					deposit.amount(), now, deposit.dateTime()));
+		}
+		transactionHistory.record(entries);
+		return after;
+	}
+
+	/**
+	 * {@link BankAccountRepository#subtractFromBalance} that also moves the owner's total and
+	 * records the withdrawal.
+	 */
+	@Transactional
+	public BankAccount subtractFromBalance(Long id, String owner, long delta, Date dateTime) {
+		BankAccount after = bankAccountRepository.subtractFromBalance(id, owner, delta);
+		if (after != null) {
+			apply(Key.of(after), 0, -delta);
+			transactionHistory.record(List.of(Transaction.withdrawal(after, delta, transactionHistory.now(), dateTime)));
+		}
+		return after;
+	}
+
+	/**
+	 * Saves the account and moves it into its owner's totals. When {@code account} carries the
+	 * id of an existing account, that one is replaced and taken out of its previous owner's totals.
+	 */
+	@Transactional
+	public Saved save(BankAccount account) {
+		BankAccount previous = account.id() == null ? null : bankAccountRepository.lockById(account.id());
+		BankAccount saved = bankAccountRepository.save(account);
+		SortedMap<Key, Delta> deltas = new TreeMap<>();
+		if (previous != null) {
+			Delta.add(deltas, Key.of(previous), -1, -previous.amount());
+		}
+		Delta.add(deltas, Key.of(saved), 1, saved.amount());
+		applyAll(deltas);
+		return new Saved(previous, saved);
+	}
+
+	/**
+	 * Applies the changes of a transaction that wrote {@code bank_account} itself, in key order.
+	 * Entries that cancel out (e.g. a transfer between two savings accounts of the same owner)
+	 * are skipped.
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void applyAll(SortedMap<Key, Delta> deltas) {
+		deltas.forEach((key, delta) -> {
+			if (delta.accounts() != 0 || delta.total() != 0) {
+				apply(key, delta.accounts(), delta.total());
+			}
+		});
+	}
+
+	/**
+	 * Reads an owner's totals: O(number of account types), whatever the number of accounts. In
+	 * ledger mode they follow {@code bank_account}, so they lag the ledger by up to one checkpoint.
+	 */
+	public OwnerSummary summary(String owner) {
+		Map<String, TypeSummary> byType = new LinkedHashMap<>();
+		jdbcTemplate.query("SELECT account_type, accounts, total FROM owner_balance "
+				+ "WHERE owner = ? AND accounts > 0 ORDER BY account_type",
+				rs -> {
+					byType.put(rs.getString("account_type"), new TypeSummary(rs.getLong("accounts"), rs.getLong("total")));
+				}, owner);
+		long accounts = 0;
+		long total = 0;
+		for (TypeSummary type : byType.values()) {
+			accounts += type.accounts();
+			total += type.total();
+		}
+		return new OwnerSummary(owner, accounts, total, byType);
+	}
+
+	private void apply(Key key, long accounts, long total) {
+		if (jdbcTemplate.update(UPDATE_SQL, accounts, total, key.owner(), key.accountType()) > 0) {
+			return;
+		}
+		try {
+			jdbcTemplate.update(INSERT_SQL, key.owner(), key.accountType(), accounts, total);
+		} catch (DuplicateKeyException e) {
+			// Another transaction created the row first
+			jdbcTemplate.update(UPDATE_SQL, accounts, total, key.owner(), key.accountType());
+		}
+	}
+
+	public record Key(String owner, String accountType) implements Comparable<Key> {
+
+		private static final Comparator<Key> ORDER = Comparator.comparing(Key::owner).thenComparing(Key::accountType);
+
+		static Key of(BankAccount account) {
+			return new Key(account.owner(), account.accountType());
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			return ORDER.compare(this, other);
+		}
+	}
+
+	public record Delta(long accounts, long total) {
+
+		static void add(Map<Key, Delta> deltas, Key key, long accounts, long total) {
+			deltas.merge(key, new Delta(accounts, total),
+					(a, b) -> new Delta(a.accounts() + b.accounts(), a.total() + b.total()));
+		}
+	}
+
+	/**
+	 * @param previous the account that was replaced, {@code null} when a new one was created
+	 */
+	public record Saved(BankAccount previous, BankAccount saved) {
+	}
+
+	public record OwnerSummary(String owner, long accounts, @Cents long total, Map<String, TypeSummary> byAccountType) {
+	}
+
+	public record TypeSummary(long accounts, @Cents long total) {
+	}
+}
@@ -0,0 +1,226 @@
+package com.capmation.challenge1;
+
+import java.net.URI;
+import java.security.Principal;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.capmation.challenge1.BatchOperationService.ItemResult;
+import com.capmation.challenge1.TransactionHistory.Transaction;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * {@link BankAccountController} on WebFlux and R2DBC: the same routes, status codes and bodies,
+ * without holding a thread while the database works. Listings are read straight from the
+ * database instead of through {@link BankAccountCache}.
+ */
+@RestController
+@RequestMapping("/bankaccounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBankAccountController {
+
+	private ReactiveBankAccountRepository bankAccountRepository;
+	private ReactiveOwnerBalances ownerBalances;
+	private ReactiveTransferService transferService;
+	private BatchOperationService batchOperationService;
+	private ReactiveTransactionHistory transactionHistory;
+	private int maxBatchOperations;
+
+	public ReactiveBankAccountController(ReactiveBankAccountRepository bankAccountRepository,
+			ReactiveOwnerBalances ownerBalances, ReactiveTransferService transferService,
+			BatchOperationService batchOperationService, ReactiveTransactionHistory transactionHistory,
+			@Value("${bankaccounts.batch.max-operations:10000}") int maxBatchOperations) {
+		this.bankAccountRepository = bankAccountRepository;
+		this.ownerBalances = ownerBalances;
+		this.transferService = transferService;
+		this.batchOperationService = batchOperationService;
+		this.transactionHistory = transactionHistory;
+		this.maxBatchOperations = maxBatchOperations;
+	}
+
+	@GetMapping("/{requestedId}")
+	public Mono<ResponseEntity<BankAccount>> findById(@PathVariable Long requestedId, Principal principal) {
+		return bankAccountRepository.findById(requestedId)
+				.filter(bankAccount -> bankAccount.owner().equals(principal.getName()))
+				.map(ResponseEntity::ok)
+				.defaultIfEmpty(ResponseEntity.notFound().build());
+	}
+
+	@GetMapping
+	public Mono<ResponseEntity<List<BankAccount>>> findAll(Pageable pageable, @RequestParam(required = false) String cursor,
+			Principal principal) {
+		if (cursor != null) {
+			return findAllAfter(cursor, pageable.getPageSize(), principal);
+		}
+		PageRequest pageRequest = PageRequest.of(
+				pageable.getPageNumber(),
+				pageable.getPageSize(),
+				pageable.getSortOr(Sort.by(Sort.Direction.ASC, "amount"))
+		);
+		return bankAccountRepository.findByOwner(principal.getName(), pageRequest).collectList().map(ResponseEntity::ok);
+	}
+
+	@GetMapping("/summary")
+	public Mono<ResponseEntity<OwnerBalances.OwnerSummary>> summary(Principal principal) {
+		return ownerBalances.summary(principal.getName()).map(ResponseEntity::ok);
+	}
+
+	/**
+	 * Streams the accounts as they are read, one JSON document per line.
+	 */
+	@GetMapping(value = "/export", produces = BankAccountController.NDJSON)
+	public Flux<BankAccount> exportAll(Principal principal) {
+		return bankAccountRepository.findAllByOwnerOrderById(principal.getName());
+	}
+
+	/**
+	 * @see BankAccountController#findAll
+	 */
+	private Mono<ResponseEntity<List<BankAccount>>> findAllAfter(String cursor, int pageSize, Principal principal) {
+		KeysetCursor after;
+		try {
+			after = cursor.isEmpty() ? null : KeysetCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			return Mono.just(ResponseEntity.badRequest().build());
+		}
+		// Ask for one extra row to know whether there is a next page
+		Flux<BankAccount> rows = after == null
+				? bankAccountRepository.findFirstPageByOwner(principal.getName(), pageSize + 1)
+				: bankAccountRepository.findPageByOwnerAfter(principal.getName(), after.amount(), after.id(), pageSize + 1);
+		return rows.collectList().map(list -> {
+			if (list.size() <= pageSize) {
+				return ResponseEntity.ok(list);
+			}
+			List<BankAccount> page = list.subList(0, pageSize);
+			return ResponseEntity.ok()
+					.header(BankAccountController.NEXT_CURSOR_HEADER, KeysetCursor.after(page.get(pageSize - 1)).encode())
+					.body(page);
+		});
+	}
+
+	/**
+	 * @see BankAccountController#findTransactions
+	 */
+	@GetMapping("/{requestedId}/transactions")
+	public Mono<ResponseEntity<List<Transaction>>> findTransactions(@PathVariable Long requestedId,
+			@RequestParam(required = false) Instant from, @RequestParam(required = false) Instant to,
+			@RequestParam(required = false) String cursor, Pageable pageable, Principal principal) {
+		if (from != null && to != null && !from.isBefore(to)) {
+			return Mono.just(ResponseEntity.badRequest().build());
+		}
+		TransactionHistory.Cursor after;
+		try {
+			after = cursor == null || cursor.isEmpty() ? null : TransactionHistory.Cursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			return Mono.just(ResponseEntity.badRequest().build());
+		}
+		int pageSize = pageable.getPageSize();
+		return bankAccountRepository.findById(requestedId)
+				.filter(bankAccount -> bankAccount.owner().equals(principal.getName()))
+				// Ask for one extra entry to know whether there is a next page
+				.flatMap(bankAccount -> transactionHistory.find(requestedId, from, to, after, pageSize + 1))
+				.map(rows -> {
+					if (rows.size() <= pageSize) {
+						return ResponseEntity.ok(rows);
+					}
+					List<Transaction> page = rows.subList(0, pageSize);
+					return ResponseEntity.ok()
+							.header(BankAccountController.NEXT_CURSOR_HEADER,
+									TransactionHistory.Cursor.after(page.get(pageSize - 1)).encode())
+							.body(page);
+				})
+				.defaultIfEmpty(ResponseEntity.notFound().build());
+	}
+
+	@PostMapping
+	public Mono<ResponseEntity<Void>> createBankAccount(@RequestBody BankAccount newBankAccountRequest,
+			UriComponentsBuilder ucb) {
+		if (newBankAccountRequest.amount() < 0) {
+			return Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+		}
+		return ownerBalances.save(newBankAccountRequest).map(saved -> {
+			URI locationOfNewBankAccount = ucb
+					.path("bankaccounts/{id}")
+					.buildAndExpand(saved.saved().id())
+					.toUri();
+			return ResponseEntity.created(locationOfNewBankAccount).build();
+		});
+	}
+
+	@PatchMapping("/{requestedId}/deposit")
+	public Mono<ResponseEntity<BankAccount>> putDepositInBankAccount(@PathVariable Long requestedId,
+			@RequestBody DepositRecord depositRecord) {
+		if (depositRecord.amount() <= 0) {
+			return Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+		}
+		return ownerBalances.addToBalance(requestedId, depositRecord.amount(), depositRecord.dateTime())
+				.map(ResponseEntity::ok)
+				// Nothing was updated: either there is no such account or the balance would overflow
+				.switchIfEmpty(Mono.defer(() -> bankAccountRepository.existsById(requestedId)
+						.map(exists -> new ResponseEntity<>(exists ? HttpStatus.BAD_REQUEST : HttpStatus.NOT_FOUND))));
+	}
+
+	@PatchMapping("/{requestedId}/withdrawal")
+	public Mono<ResponseEntity<BankAccount>> putWithdrawalInBankAccount(@PathVariable Long requestedId,
+			@RequestBody WithdrawalRecord withdrawalRecord, Principal principal) {
+		if (withdrawalRecord.amount() <= 0) {
+			return Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+		}
+		return ownerBalances.subtractFromBalance(requestedId, principal.getName(), withdrawalRecord.amount(),
+				withdrawalRecord.dateTime())
+				.map(ResponseEntity::ok)
+				// Nothing was updated: somebody else's account or not enough funds
+				.switchIfEmpty(Mono.defer(() -> bankAccountRepository.findById(requestedId)
+						.filter(bankAccount -> bankAccount.owner().equalsIgnoreCase(principal.getName()))
+						.map(bankAccount -> new ResponseEntity<BankAccount>(HttpStatus.BAD_REQUEST))
+						.defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND))));
+	}
+
+	@PatchMapping("/{requestedId}/tranference")
+	public Mono<ResponseEntity<BankAccount>> putTransferenceInBankAccount(@PathVariable Long requestedId,
+			@RequestBody TransferenceRecord transferenceRecord, Principal principal) {
+		return transferService.transfer(requestedId, transferenceRecord.destinationId(), transferenceRecord.amount(),
+				principal.getName(), transferenceRecord.dateTime())
+				.map(result -> switch (result.status()) {
+					case COMPLETED -> ResponseEntity.ok(result.source());
+					case NOT_FOUND -> new ResponseEntity<>(HttpStatus.NOT_FOUND);
+					case INSUFFICIENT_FUNDS, INVALID -> new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+				});
+	}
+
+	/**
+	 * Batches reuse {@link BatchOperationService}, whose chunked JDBC statements run on the
+	 * bounded elastic scheduler so they never hold an event loop thread.
+	 */
+	@PostMapping("/batch")
+	public Mono<ResponseEntity<List<ItemResult>>> applyBatch(@RequestBody List<BatchOperationRecord> operations,
+			@RequestParam(defaultValue = "true") boolean atomic, Principal principal) {
+		if (operations.size() > maxBatchOperations) {
+			return Mono.just(new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE));
+		}
+		String owner = principal.getName();
+		return Mono.fromCallable(() -> batchOperationService.apply(operations, owner, atomic))
+				.subscribeOn(Schedulers.boundedElastic())
+				.map(ResponseEntity::ok);
+	}
+}
@@ -0,0 +1,59 @@
+package com.capmation.challenge1;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC counterpart of {@link BankAccountRepository}, used by the reactive stack
+ * ({@link ReactiveStackConfig}). The statements are the same; transactions are demarcated by
+ * the callers with a {@code TransactionalOperator}.
+ */
+public interface ReactiveBankAccountRepository extends R2dbcRepository<BankAccount, Long> {
+
+    Flux<BankAccount> findByOwner(String owner, Pageable pageable);
+
+    /**
+     * @see BankAccountRepository#findFirstPageByOwner
+     */
+    @Query("SELECT * FROM bank_account WHERE owner = :owner ORDER BY amount, id LIMIT :limit")
+    Flux<BankAccount> findFirstPageByOwner(@Param("owner") String owner, @Param("limit") int limit);
+
+    /**
+     * @see BankAccountRepository#findPageByOwnerAfter
+     */
+    @Query("SELECT * FROM bank_account WHERE owner = :owner AND amount >= :amount AND (amount > :amount OR id > :id) "
+            + "ORDER BY amount, id LIMIT :limit")
+    Flux<BankAccount> findPageByOwnerAfter(@Param("owner") String owner, @Param("amount") long amount,
+            @Param("id") Long id, @Param("limit") int limit);
+
+    /**
+     * Every account of the owner in id order, as {@link BankAccountExporter} writes them.
+     */
+    @Query("SELECT * FROM bank_account WHERE owner = :owner ORDER BY id")
+    Flux<BankAccount> findAllByOwnerOrderById(@Param("owner") String owner);
+
+    /**
+     * @see BankAccountRepository#addToBalance
+     */
+    @Query("SELECT * FROM FINAL TABLE (UPDATE bank_account SET amount = amount + :delta "
+            + "WHERE id = :id AND amount <= " + Money.MAX_CENTS + " - :delta)")
+    Mono<BankAccount> addToBalance(@Param("id") Long id, @Param("delta") long delta);
+
+    /**
+     * @see BankAccountRepository#subtractFromBalance
+     */
+    @Query("SELECT * FROM FINAL TABLE (UPDATE bank_account SET amount = amount - :delta "
+            + "WHERE id = :id AND LOWER(owner) = LOWER(:owner) AND amount >= :delta)")
+    Mono<BankAccount> subtractFromBalance(@Param("id") Long id, @Param("owner") String owner, @Param("delta") long delta);
+
+    /**
+     * Reads the account and locks its row until the surrounding transaction ends.
+     */
+    @Query("SELECT * FROM bank_account WHERE id = :id FOR UPDATE")
+    Mono<BankAccount> lockById(@Param("id") Long id);
+}
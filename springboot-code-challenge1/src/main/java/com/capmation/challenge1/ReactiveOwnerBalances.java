@@ -0,0 +1,145 @@
+package com.capmation.challenge1;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.capmation.challenge1.OwnerBalances.Delta;
+import com.capmation.challenge1.OwnerBalances.Key;
+import com.capmation.challenge1.OwnerBalances.OwnerSummary;
+import com.capmation.challenge1.OwnerBalances.Saved;
+import com.capmation.challenge1.OwnerBalances.TypeSummary;
+import com.capmation.challenge1.TransactionHistory.Transaction;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link OwnerBalances}: the same writes, each with its owner aggregate
+ * update in one R2DBC transaction, and the same lock order (account rows first, then aggregate
+ * rows in {@link Key} order).
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveOwnerBalances {
+
+	private static final String UPDATE_SQL = "UPDATE owner_balance SET accounts = accounts + :accounts, total = total + :total "
+			+ "WHERE owner = :owner AND account_type = :accountType";
+	private static final String INSERT_SQL = "INSERT INTO owner_balance (owner, account_type, accounts, total) "
+			+ "VALUES (:owner, :accountType, :accounts, :total)";
+
+	private final ReactiveBankAccountRepository bankAccountRepository;
+	private final DatabaseClient databaseClient;
+	private final ReactiveTransactionHistory transactionHistory;
+	private final TransactionalOperator transactionalOperator;
+
+	public ReactiveOwnerBalances(ReactiveBankAccountRepository bankAccountRepository, DatabaseClient databaseClient,
+			ReactiveTransactionHistory transactionHistory, TransactionalOperator transactionalOperator) {
+		this.bankAccountRepository = bankAccountRepository;
+		this.databaseClient = databaseClient;
+		this.transactionHistory = transactionHistory;
+		this.transactionalOperator = transactionalOperator;
+	}
+
+	/**
+	 * @see OwnerBalances#addToBalance
+	 */
+	public Mono<BankAccount> addToBalance(Long id, long delta, Date dateTime) {
+		return bankAccountRepository.addToBalance(id, delta)
+				.flatMap(after -> apply(Key.of(after), 0, delta)
+						.then(transactionHistory.record(List.of(
+								Transaction.deposit(after, delta, transactionHistory.now(), dateTime))))
+						.thenReturn(after))
+				.as(transactionalOperator::transactional);
+	}
+
+	/**
+	 * @see OwnerBalances#subtractFromBalance
+	 */
+	public Mono<BankAccount> subtractFromBalance(Long id, String owner, long delta, Date dateTime) {
+		return bankAccountRepository.subtractFromBalance(id, owner, delta)
+				.flatMap(after -> apply(Key.of(after), 0, -delta)
+						.then(transactionHistory.record(List.of(
+								Transaction.withdrawal(after, delta, transactionHistory.now(), dateTime))))
+						.thenReturn(after))
+				.as(transactionalOperator::transactional);
+	}
+
+	/**
+	 * @see OwnerBalances#save
+	 */
+	public Mono<Saved> save(BankAccount account) {
+		Mono<Optional<BankAccount>> previous = account.id() == null ? Mono.just(Optional.empty())
+				: bankAccountRepository.lockById(account.id()).map(Optional::of).defaultIfEmpty(Optional.empty());
+		return previous
+				.flatMap(replaced -> bankAccountRepository.save(account).flatMap(saved -> {
+					SortedMap<Key, Delta> deltas = new TreeMap<>();
+					replaced.ifPresent(p -> Delta.add(deltas, Key.of(p), -1, -p.amount()));
+					Delta.add(deltas, Key.of(saved), 1, saved.amount());
+					return applyAll(deltas).thenReturn(new Saved(replaced.orElse(null), saved));
+				}))
+				.as(transactionalOperator::transactional);
+	}
+
+	/**
+	 * Applies the changes of a transaction that wrote {@code bank_account} itself, in key order.
+	 * Has to run inside that transaction.
+	 */
+	public Mono<Void> applyAll(SortedMap<Key, Delta> deltas) {
+		return Flux.fromIterable(deltas.entrySet())
+				.filter(e -> e.getValue().accounts() != 0 || e.getValue().total() != 0)
+				.concatMap(e -> apply(e.getKey(), e.getValue().accounts(), e.getValue().total()))
+				.then();
+	}
+
+	/**
+	 * @see OwnerBalances#summary
+	 */
+	public Mono<OwnerSummary> summary(String owner) {
+		return databaseClient.sql("SELECT account_type, accounts, total FROM owner_balance "
+				+ "WHERE owner = :owner AND accounts > 0 ORDER BY account_type")
+				.bind("owner", owner)
+				.map((row, metadata) -> Map.entry(row.get("account_type", String.class),
+						new TypeSummary(row.get("accounts", Long.class), row.get("total", Long.class))))
+				.all()
+				.collect(LinkedHashMap<String, TypeSummary>::new, (byType, e) -> byType.put(e.getKey(), e.getValue()))
+				.map(byType -> {
+					long accounts = 0;
+					long total = 0;
+					for (TypeSummary type : byType.values()) {
+						accounts += type.accounts();
+						total += type.total();
+					}
+					return new OwnerSummary(owner, accounts, total, byType);
+				});
+	}
+
+	private Mono<Void> apply(Key key, long accounts, long total) {
+		return update(key, accounts, total)
+				.flatMap(updated -> updated > 0 ? Mono.<Void>empty()
+						: bind(databaseClient.sql(INSERT_SQL), key, accounts, total).fetch().rowsUpdated()
+								// Another transaction created the row first
+								.onErrorResume(DuplicateKeyException.class, e -> update(key, accounts, total))
+								.then());
+	}
+
+	private Mono<Long> update(Key key, long accounts, long total) {
+		return bind(databaseClient.sql(UPDATE_SQL), key, accounts, total).fetch().rowsUpdated();
+	}
+
+	private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, Key key, long accounts,
+			long total) {
+		return spec.bind("owner", key.owner()).bind("accountType", key.accountType())
+				.bind("accounts", accounts).bind("total", total);
+	}
+}
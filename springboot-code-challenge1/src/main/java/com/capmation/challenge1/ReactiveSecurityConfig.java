@@ -0,0 +1,32 @@
+package com.capmation.challenge1;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.ReactiveAuthenticationManagerAdapter;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * {@link SecurityConfig} for the reactive stack: the same rules, and HTTP Basic checked by the
+ * same {@link AuthenticationProvider} (credential cache and timers included). The adapter runs it
+ * on the bounded elastic scheduler, so BCrypt never runs on an event loop thread.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http,
+            AuthenticationProvider authenticationProvider) {
+        http.csrf(csrf -> csrf.disable())
+        .authorizeExchange(exchange -> exchange.pathMatchers("/bankaccounts/**").permitAll())
+        // Health and metrics scrape; nothing there identifies an account or an owner
+        .authorizeExchange(exchange -> exchange.pathMatchers("/actuator/health", "/actuator/prometheus").permitAll())
+                .httpBasic(basic -> basic.authenticationManager(
+                        new ReactiveAuthenticationManagerAdapter(new ProviderManager(authenticationProvider))));
+        return http.build();
+    }
+}
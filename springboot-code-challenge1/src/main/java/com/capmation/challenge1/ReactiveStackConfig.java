@@ -0,0 +1,86 @@
+package com.capmation.challenge1;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.web.ReactivePageableHandlerMethodArgumentResolver;
+import org.springframework.data.web.ReactiveSortHandlerMethodArgumentResolver;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
+
+/**
+ * The non-blocking stack, enabled with the {@code reactive} profile
+ * ({@code application-reactive.properties}): requests are served by Netty and
+ * {@link ReactiveBankAccountController}, and accounts are read and written through R2DBC
+ * ({@link ReactiveBankAccountRepository}). The JDBC data source stays for the components that
+ * run off the request path, such as {@link OwnerBalanceReconciler}.
+ * <p>
+ * Ledger mode keeps balances in memory behind per-account locks and is not available here.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveStackConfig implements WebFluxConfigurer {
+
+	public ReactiveStackConfig(ObjectProvider<Ledger> ledger) {
+		if (ledger.getIfAvailable() != null) {
+			throw new IllegalStateException("Ledger mode is not supported by the reactive stack");
+		}
+	}
+
+	/**
+	 * Netty even though Tomcat is on the classpath for the servlet stack.
+	 */
+	@Bean
+	public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+		return new NettyReactiveWebServerFactory();
+	}
+
+	/**
+	 * Boot only auto-configures a JDBC data source when there is no R2DBC connection factory.
+	 */
+	@Bean
+	@ConfigurationProperties("spring.datasource")
+	public DataSourceProperties dataSourceProperties() {
+		return new DataSourceProperties();
+	}
+
+	@Bean
+	public DataSource dataSource(DataSourceProperties dataSourceProperties) {
+		return dataSourceProperties.initializeDataSourceBuilder().build();
+	}
+
+	/**
+	 * Boot adds an R2DBC transaction manager next to this one; {@code @Transactional} on the JDBC
+	 * components keeps meaning this one. Reactive code uses the auto-configured
+	 * {@code TransactionalOperator}.
+	 */
+	@Bean
+	@Primary
+	public JdbcTransactionManager transactionManager(DataSource dataSource) {
+		return new JdbcTransactionManager(dataSource);
+	}
+
+	/**
+	 * Both Spring Data modules register a {@code RelationalMappingContext}; the JDBC repositories
+	 * look theirs up by that type.
+	 */
+	@Bean
+	public static BeanFactoryPostProcessor jdbcMappingContextIsPrimary() {
+		return beanFactory -> beanFactory.getBeanDefinition("jdbcMappingContext").setPrimary(true);
+	}
+
+	@Override
+	public void configureArgumentResolvers(ArgumentResolverConfigurer configurer) {
+		configurer.addCustomResolver(new ReactivePageableHandlerMethodArgumentResolver(),
+				new ReactiveSortHandlerMethodArgumentResolver());
+	}
+}
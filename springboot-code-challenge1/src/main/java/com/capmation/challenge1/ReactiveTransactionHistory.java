@@ -0,0 +1,68 @@
+package com.capmation.challenge1;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+
+import com.capmation.challenge1.TransactionHistory.Cursor;
+import com.capmation.challenge1.TransactionHistory.Transaction;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive counterpart of {@link TransactionHistory}: entries are inserted with R2DBC in the
+ * caller's transaction, into the partitions {@link TransactionHistory} manages. Those are created
+ * ahead of time, so recording at the current time runs no DDL. Reads go through the JDBC
+ * implementation on the bounded elastic scheduler.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTransactionHistory {
+
+	private final TransactionHistory transactionHistory;
+	private final DatabaseClient databaseClient;
+
+	public ReactiveTransactionHistory(TransactionHistory transactionHistory, DatabaseClient databaseClient) {
+		this.transactionHistory = transactionHistory;
+		this.databaseClient = databaseClient;
+	}
+
+	public Instant now() {
+		return transactionHistory.now();
+	}
+
+	/**
+	 * Has to run inside the transaction that changed the balances.
+	 */
+	public Mono<Void> record(List<Transaction> entries) {
+		return Flux.fromIterable(entries).concatMap(this::insert).then();
+	}
+
+	/**
+	 * @see TransactionHistory#find
+	 */
+	public Mono<List<Transaction>> find(Long accountId, Instant from, Instant to, Cursor after, int limit) {
+		return Mono.fromCallable(() -> transactionHistory.find(accountId, from, to, after, limit))
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	private Mono<Long> insert(Transaction entry) {
+		DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(transactionHistory.namedInsertSql(entry.recordedAt()))
+				.bind("accountId", entry.accountId())
+				.bind("type", entry.type().name())
+				.bind("amount", entry.amount())
+				.bind("balanceAfter", entry.balanceAfter())
+				.bind("recordedAt", TransactionHistory.toTimestamp(entry.recordedAt()));
+		spec = entry.counterpartyId() == null ? spec.bindNull("counterpartyId", Long.class)
+				: spec.bind("counterpartyId", entry.counterpartyId());
+		spec = entry.dateTime() == null ? spec.bindNull("dateTime", OffsetDateTime.class)
+				: spec.bind("dateTime", TransactionHistory.toTimestamp(entry.dateTime().toInstant()));
+		return spec.fetch().rowsUpdated();
+	}
+}
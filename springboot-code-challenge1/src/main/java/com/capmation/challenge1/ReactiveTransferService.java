@@ -0,0 +1,104 @@
+package com.capmation.challenge1;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.capmation.challenge1.TransferService.TransferResult;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Reactive counterpart of {@link TransferService}: both rows are locked in ascending id order in
+ * one R2DBC transaction, which is retried on lock timeouts and deadlocks with the same
+ * {@code bankaccounts.retry.*} settings as {@link TransactionRetrier}.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTransferService {
+
+	private final ReactiveBankAccountRepository bankAccountRepository;
+	private final ReactiveOwnerBalances ownerBalances;
+	private final ReactiveTransactionHistory transactionHistory;
+	private final TransactionalOperator transactionalOperator;
+	private final Retry retry;
+	private final Timer lockWait;
+
+	public ReactiveTransferService(ReactiveBankAccountRepository bankAccountRepository,
+			ReactiveOwnerBalances ownerBalances, ReactiveTransactionHistory transactionHistory,
+			TransactionalOperator transactionalOperator,
+			MeterRegistry meterRegistry,
+			@Value("${bankaccounts.retry.max-attempts:5}") int maxAttempts,
+			@Value("${bankaccounts.retry.initial-backoff-ms:5}") long initialBackoffMillis,
+			@Value("${bankaccounts.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+		this.bankAccountRepository = bankAccountRepository;
+		this.ownerBalances = ownerBalances;
+		this.transactionHistory = transactionHistory;
+		this.transactionalOperator = transactionalOperator;
+		this.retry = Retry.backoff(maxAttempts - 1, Duration.ofMillis(initialBackoffMillis))
+				.maxBackoff(Duration.ofMillis(maxBackoffMillis))
+				.filter(ConcurrencyFailureException.class::isInstance)
+				.onRetryExhaustedThrow((spec, signal) -> signal.failure());
+		this.lockWait = Timer.builder("bankaccounts.lock.wait").tag("path", "transfer")
+				.description("Time to acquire the locks a mutation needs")
+				.register(meterRegistry);
+	}
+
+	public Mono<TransferResult> transfer(Long sourceId, Long destinationId, long amount, String owner, Date dateTime) {
+		if (sourceId == null || destinationId == null || sourceId.equals(destinationId)
+				|| amount <= 0) {
+			return Mono.just(TransferResult.of(TransferResult.Status.INVALID));
+		}
+		return Mono.defer(() -> {
+			Timer.Sample locking = Timer.start();
+			return lock(Math.min(sourceId, destinationId))
+					.zipWhen(first -> lock(Math.max(sourceId, destinationId)))
+					.flatMap(locked -> {
+						locking.stop(lockWait);
+						Optional<BankAccount> first = locked.getT1();
+						Optional<BankAccount> second = locked.getT2();
+						BankAccount source = (sourceId < destinationId ? first : second).orElse(null);
+						BankAccount destination = (sourceId < destinationId ? second : first).orElse(null);
+						return apply(source, destination, amount, owner, dateTime);
+					})
+					.as(transactionalOperator::transactional);
+		}).retryWhen(retry);
+	}
+
+	private Mono<TransferResult> apply(BankAccount source, BankAccount destination, long amount, String owner,
+			Date dateTime) {
+		if (source == null || destination == null || !source.owner().equalsIgnoreCase(owner)) {
+			return Mono.just(TransferResult.of(TransferResult.Status.NOT_FOUND));
+		}
+		if (source.amount() < amount) {
+			return Mono.just(TransferResult.of(TransferResult.Status.INSUFFICIENT_FUNDS));
+		}
+		if (!Money.canAdd(destination.amount(), amount)) {
+			return Mono.just(TransferResult.of(TransferResult.Status.INVALID));
+		}
+		SortedMap<OwnerBalances.Key, OwnerBalances.Delta> deltas = new TreeMap<>();
+		OwnerBalances.Delta.add(deltas, OwnerBalances.Key.of(source), 0, -amount);
+		OwnerBalances.Delta.add(deltas, OwnerBalances.Key.of(destination), 0, amount);
+		return bankAccountRepository.addToBalance(source.id(), -amount)
+				.zipWhen(sourceAfter -> bankAccountRepository.addToBalance(destination.id(), amount))
+				.flatMap(after -> ownerBalances.applyAll(deltas)
+						.then(transactionHistory.record(TransactionHistory.Transaction.transfer(after.getT1(), after.getT2(),
+								amount, transactionHistory.now(), dateTime)))
+						.thenReturn(new TransferResult(TransferResult.Status.COMPLETED, after.getT1(), after.getT2())));
+	}
+
+	private Mono<Optional<BankAccount>> lock(Long id) {
+		return bankAccountRepository.lockById(id).map(Optional::of).defaultIfEmpty(Optional.empty());
+	}
+}
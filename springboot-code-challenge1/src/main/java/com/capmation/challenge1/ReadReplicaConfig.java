@@ -0,0 +1,179 @@
+package com.capmation.challenge1;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Enables a read replica ({@code bankaccounts.replica.enabled=true}): {@code GET} and
+ * {@code HEAD} requests on {@code /bankaccounts} read through a second connection pool,
+ * configured under {@code bankaccounts.replica.datasource} like {@code spring.datasource}, and
+ * everything else uses the primary (see {@link ReadReplicaRouting}). Both pools report the usual
+ * {@code hikaricp.connections.*} metrics, tagged {@code pool=primary} and {@code pool=replica}.
+ * <p>
+ * Read your writes: for {@code bankaccounts.replica.read-your-writes-window} (2s, 0 to turn it
+ * off) after a principal's last mutation, its reads stay on the primary so they do not miss a
+ * write the replica has not applied yet. Reads kept on the primary are counted
+ * ({@code bankaccounts.datasource.read-your-writes}). A replica lagging further behind than the
+ * window can still serve an older balance, which {@link BankAccountCache} may then keep until
+ * its time to live.
+ * <p>
+ * Without a URL the replica is an embedded database of its own, initialized with the same
+ * scripts as the primary and never written to afterwards. It shows routing locally, not
+ * replication. It has no history partitions ({@link TransactionHistory}) and no built
+ * {@code owner_balance} ({@link OwnerBalanceReconciler}), so {@code /transactions} and
+ * {@code /summary} keep reading from the primary then. Only the servlet stack routes; the
+ * reactive one reads through R2DBC.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bankaccounts.replica.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ReadReplicaConfig {
+
+	// After the security filter chain, so the principal is known
+	private static final int ORDER = SecurityProperties.DEFAULT_FILTER_ORDER + 10;
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+		HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		primary.setPoolName("primary");
+		return primary;
+	}
+
+	/**
+	 * Not injectable by type, which would make {@code DataSourceProperties} ambiguous.
+	 */
+	@Bean(autowireCandidate = false)
+	@ConfigurationProperties("bankaccounts.replica.datasource")
+	public DataSourceProperties replicaDataSourceProperties() {
+		return new DataSourceProperties();
+	}
+
+	@Bean
+	@ConfigurationProperties("bankaccounts.replica.datasource.hikari")
+	public HikariDataSource replicaDataSource() {
+		HikariDataSource replica = replicaDataSourceProperties().initializeDataSourceBuilder().type(HikariDataSource.class)
+				.build();
+		replica.setPoolName("replica");
+		replica.setReadOnly(true);
+		return replica;
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+			@Qualifier("replicaDataSource") DataSource replicaDataSource, MeterRegistry meterRegistry) {
+		return new LazyConnectionDataSourceProxy(new ReadReplicaRouting(primaryDataSource, replicaDataSource, meterRegistry));
+	}
+
+	/**
+	 * Runs the {@code spring.sql.init} scripts on an embedded replica, next to Boot's run on the
+	 * primary.
+	 */
+	@Bean
+	public DataSourceScriptDatabaseInitializer replicaDataSourceScriptDatabaseInitializer(
+			@Qualifier("replicaDataSource") DataSource replicaDataSource,
+			ObjectProvider<SqlInitializationProperties> sqlInitializationProperties) {
+		SqlInitializationProperties properties = sqlInitializationProperties.getIfAvailable(() -> {
+			SqlInitializationProperties disabled = new SqlInitializationProperties();
+			disabled.setMode(DatabaseInitializationMode.NEVER);
+			return disabled;
+		});
+		return new DataSourceScriptDatabaseInitializer(replicaDataSource,
+				SqlDataSourceScriptDatabaseInitializer.getSettings(properties));
+	}
+
+	@Bean
+	public FilterRegistrationBean<OncePerRequestFilter> readReplicaFilter(MeterRegistry meterRegistry,
+			@Value("${bankaccounts.replica.read-your-writes-window:2s}") Duration readYourWritesWindow,
+			@Value("${bankaccounts.replica.read-your-writes-max-principals:100000}") long maxPrincipals) {
+		boolean embeddedReplica = !StringUtils.hasText(replicaDataSourceProperties().getUrl());
+		Cache<String, Boolean> recentWriters = Caffeine.newBuilder().maximumSize(maxPrincipals)
+				.expireAfterWrite(readYourWritesWindow).build();
+		Counter keptOnPrimary = Counter.builder("bankaccounts.datasource.read-your-writes")
+				.description("Read requests kept on the primary after a write by the same principal").register(meterRegistry);
+		boolean readYourWrites = !readYourWritesWindow.isZero();
+		OncePerRequestFilter filter = new OncePerRequestFilter() {
+			@Override
+			protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+					throws ServletException, IOException {
+				String principal = request.getRemoteUser();
+				if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+					if (!readYourWrites || principal == null) {
+						chain.doFilter(request, response);
+						return;
+					}
+					// Before, for reads that overlap the write, and after, so the window starts once it is done
+					recentWriters.put(principal, Boolean.TRUE);
+					try {
+						chain.doFilter(request, response);
+					} finally {
+						recentWriters.put(principal, Boolean.TRUE);
+					}
+					return;
+				}
+				if (embeddedReplica && readsApplicationMaintainedTables(request)) {
+					chain.doFilter(request, response);
+					return;
+				}
+				if (principal != null && recentWriters.getIfPresent(principal) != null) {
+					keptOnPrimary.increment();
+					chain.doFilter(request, response);
+					return;
+				}
+				ReadReplicaRouting.allowReplica();
+				try {
+					chain.doFilter(request, response);
+				} finally {
+					ReadReplicaRouting.disallowReplica();
+				}
+			}
+		};
+		FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(filter);
+		registration.addUrlPatterns("/bankaccounts", "/bankaccounts/*");
+		registration.setOrder(ORDER);
+		return registration;
+	}
+
+	/**
+	 * Whether the request reads tables the application creates or fills at runtime, which only a
+	 * replicated database has too.
+	 */
+	private static boolean readsApplicationMaintainedTables(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		return path.equals("/bankaccounts/summary") || path.endsWith("/transactions");
+	}
+}
@@ -0,0 +1,87 @@
+package com.capmation.challenge1;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hands out primary connections unless the current thread has been allowed to read from the
+ * replica ({@link #allowReplica()}), which {@link ReadReplicaConfig} only does for read-only
+ * requests. Even then a read-write transaction gets a primary connection, so a write can never
+ * end up on the replica. Everything off the request path (the ledger, the reconciler, coalesced
+ * deposits, history maintenance) keeps reading from the primary.
+ * <p>
+ * Meant to sit behind a {@code LazyConnectionDataSourceProxy}: the transaction manager asks for
+ * its connection before the transaction is marked active, and the proxy defers the choice to the
+ * first statement.
+ * <p>
+ * Counts connections by target ({@code bankaccounts.datasource.routed}).
+ */
+public class ReadReplicaRouting extends AbstractRoutingDataSource {
+
+	private static final ThreadLocal<Boolean> REPLICA_ALLOWED = new ThreadLocal<>();
+
+	private final Counter routedToPrimary;
+	private final Counter routedToReplica;
+
+	public ReadReplicaRouting(DataSource primary, DataSource replica, MeterRegistry meterRegistry) {
+		setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+		setDefaultTargetDataSource(primary);
+		this.routedToPrimary = Counter.builder("bankaccounts.datasource.routed").tag("target", "primary")
+				.description("Connections handed out, by pool").register(meterRegistry);
+		this.routedToReplica = Counter.builder("bankaccounts.datasource.routed").tag("target", "replica")
+				.description("Connections handed out, by pool").register(meterRegistry);
+		afterPropertiesSet();
+	}
+
+	/**
+	 * Lets the current thread read from the replica until {@link #disallowReplica()}.
+	 */
+	public static void allowReplica() {
+		REPLICA_ALLOWED.set(Boolean.TRUE);
+	}
+
+	public static void disallowReplica() {
+		REPLICA_ALLOWED.remove();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		boolean readWriteTransaction = TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+		if (REPLICA_ALLOWED.get() != null && !readWriteTransaction) {
+			routedToReplica.increment();
+			return Target.REPLICA;
+		}
+		routedToPrimary.increment();
+		return Target.PRIMARY;
+	}
+
+	/**
+	 * Not a wrapper of either pool: unwrapping would route, and pool metrics would count the
+	 * primary twice.
+	 */
+	@Override
+	public boolean isWrapperFor(Class<?> iface) {
+		return iface.isInstance(this);
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		throw new SQLException("ReadReplicaRouting is not a wrapper for " + iface.getName());
+	}
+
+	private enum Target {
+		PRIMARY, REPLICA
+	}
+}
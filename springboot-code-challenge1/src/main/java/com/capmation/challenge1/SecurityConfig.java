@@ -1,7 +1,13 @@
 package com.capmation.challenge1;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.userdetails.User;
@@ -12,14 +18,21 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 public class SecurityConfig {
 	
     @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
     	
         http.csrf(csrf -> csrf.disable())
         .authorizeHttpRequests(auth -> auth.requestMatchers("/bankaccounts/**").permitAll())
+        // Let rejected request bodies (e.g. an invalid amount) reach the error page as a 400 instead of a 403
+        .authorizeHttpRequests(auth -> auth.requestMatchers("/error").permitAll())
+        // Health and metrics scrape; nothing there identifies an account or an owner
+        .authorizeHttpRequests(auth -> auth.requestMatchers("/actuator/health", "/actuator/prometheus").permitAll())
                // .authorizeHttpRequests(auth -> auth.requestMatchers("/bankaccounts/**").hasRole("ACCOUNT-OWNER"))
                 //.authorizeHttpRequests(auth -> auth.requestMatchers("/bankaccounts/**/deposit").hasAnyRole("ACCOUNT-OWNER","SOMETHING-ELSE"))
                 .httpBasic(Customizer.withDefaults());
@@ -31,6 +44,26 @@ public class SecurityConfig {
         return new BCryptPasswordEncoder();
     }
 
+    @Bean
+    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
+            MeterRegistry meterRegistry,
+            @Value("${bankaccounts.security.credential-cache.enabled:true}") boolean credentialCacheEnabled,
+            @Value("${bankaccounts.security.credential-cache.ttl:5m}") Duration credentialCacheTtl,
+            @Value("${bankaccounts.security.credential-cache.max-size:10000}") long credentialCacheMaxSize) {
+        DaoAuthenticationProvider bcrypt = new DaoAuthenticationProvider();
+        bcrypt.setUserDetailsService(userDetailsService);
+        bcrypt.setPasswordEncoder(passwordEncoder);
+        // BCrypt on its own, and the whole authentication below, so the share of BCrypt is visible
+        AuthenticationProvider timedBcrypt = new TimedAuthenticationProvider(bcrypt, meterRegistry, "bankaccounts.authentication.bcrypt");
+        if (!credentialCacheEnabled) {
+            return new TimedAuthenticationProvider(timedBcrypt, meterRegistry, "bankaccounts.authentication");
+        }
+        // Skip BCrypt for credentials that were verified recently (see CachingAuthenticationProvider)
+        return new TimedAuthenticationProvider(
+                new CachingAuthenticationProvider(timedBcrypt, userDetailsService, credentialCacheTtl, credentialCacheMaxSize),
+                meterRegistry, "bankaccounts.authentication");
+    }
+
     @Bean
     public UserDetailsService testOnlyUsers(PasswordEncoder passwordEncoder) {
         User.UserBuilder users = User.builder();
@@ -2,8 +2,10 @@ package com.capmation.challenge1;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SpringbootCodeChallenge1Application {
 
 	public static void main(String[] args) {
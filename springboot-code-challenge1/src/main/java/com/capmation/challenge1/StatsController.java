@@ -0,0 +1,56 @@
+package com.capmation.challenge1;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/bankaccounts/stats")
+public class StatsController {
+
+	private TransactionRetrier transactionRetrier;
+	private BankAccountCache bankAccountCache;
+	private ObjectProvider<Ledger> ledger;
+	private ObjectProvider<DepositCoalescer> depositCoalescer;
+	private OwnerBalanceReconciler ownerBalanceReconciler;
+
+	public StatsController(TransactionRetrier transactionRetrier, BankAccountCache bankAccountCache,
+			ObjectProvider<Ledger> ledger, ObjectProvider<DepositCoalescer> depositCoalescer,
+			OwnerBalanceReconciler ownerBalanceReconciler) {
+		this.transactionRetrier = transactionRetrier;
+		this.bankAccountCache = bankAccountCache;
+		this.ledger = ledger;
+		this.depositCoalescer = depositCoalescer;
+		this.ownerBalanceReconciler = ownerBalanceReconciler;
+	}
+
+	@GetMapping("/retries")
+	public TransactionRetrier.RetryStats retries() {
+		return transactionRetrier.stats();
+	}
+
+	@GetMapping("/cache")
+	public BankAccountCache.CacheStatistics cache() {
+		return bankAccountCache.stats();
+	}
+
+	@GetMapping("/ledger")
+	public ResponseEntity<LedgerJournal.JournalStats> ledger() {
+		Ledger current = ledger.getIfAvailable();
+		return current != null ? ResponseEntity.ok(current.journalStats()) : ResponseEntity.notFound().build();
+	}
+
+	@GetMapping("/coalescing")
+	public ResponseEntity<DepositCoalescer.CoalescingStats> coalescing() {
+		DepositCoalescer current = depositCoalescer.getIfAvailable();
+		return current != null ? ResponseEntity.ok(current.stats()) : ResponseEntity.notFound().build();
+	}
+
+	@GetMapping("/reconciliation")
+	public ResponseEntity<OwnerBalanceReconciler.Report> reconciliation() {
+		OwnerBalanceReconciler.Report report = ownerBalanceReconciler.lastReport();
+		return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+	}
+}
@@ -0,0 +1,45 @@
+package com.capmation.challenge1;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times every call to the wrapped provider under {@code name}, tagged with whether it
+ * authenticated the request. {@link SecurityConfig} wraps both the BCrypt provider and the
+ * provider in front of it, so BCrypt time can be told apart from the whole authentication.
+ */
+public class TimedAuthenticationProvider implements AuthenticationProvider {
+
+	private final AuthenticationProvider delegate;
+	private final Timer success;
+	private final Timer failure;
+
+	public TimedAuthenticationProvider(AuthenticationProvider delegate, MeterRegistry meterRegistry, String name) {
+		this.delegate = delegate;
+		this.success = Timer.builder(name).tag("outcome", "success").register(meterRegistry);
+		this.failure = Timer.builder(name).tag("outcome", "failure").register(meterRegistry);
+	}
+
+	@Override
+	public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+		long start = System.nanoTime();
+		Authentication result = null;
+		try {
+			result = delegate.authenticate(authentication);
+			return result;
+		} finally {
+			(result != null ? success : failure).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@Override
+	public boolean supports(Class<?> authentication) {
+		return delegate.supports(authentication);
+	}
+}
@@ -0,0 +1,378 @@
+package com.capmation.challenge1;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.capmation.challenge1.Money.Cents;
+
+/**
+ * Every deposit, withdrawal and transfer leg, kept per account in one table per calendar month
+ * (UTC) of the time it was recorded: {@code account_transaction_YYYYMM}. Entries are written in
+ * the same transaction as the balance change they describe, with ids from the shared
+ * {@code account_transaction_seq}.
+ * <p>
+ * A range query only reads the months it overlaps, each through its (account_id, recorded_at, id)
+ * index, and a month that is no longer needed goes away with one {@code DROP TABLE} instead of a
+ * large {@code DELETE}: see {@link #dropPartitionsBefore} and {@code bankaccounts.history.retention-months}
+ * (0, the default, keeps everything).
+ * <p>
+ * H2 commits the open transaction on DDL, so partitions are created ahead of time: the current
+ * and the next month on startup, before the web server takes requests, and then every
+ * {@code bankaccounts.history.maintenance-interval} on the application's task scheduler. An entry
+ * for any other month (e.g. replayed by {@link Ledger} after a long outage) creates its partition
+ * on a connection of its own first.
+ */
+@Component
+public class TransactionHistory implements SmartLifecycle {
+
+	private static final Logger log = LoggerFactory.getLogger(TransactionHistory.class);
+	private static final String TABLE_PREFIX = "account_transaction_";
+	private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+	private static final String COLUMNS = "id, account_id, type, amount, balance_after, counterparty_id, recorded_at, date_time";
+	// See OwnerBalanceReconciler
+	private static final String MAINTENANCE_INTERVAL_MILLIS = "#{T(org.springframework.boot.convert.DurationStyle)"
+			+ ".detectAndParse('${bankaccounts.history.maintenance-interval:1h}').toMillis()}";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final DataSource dataSource;
+	private final int retentionMonths;
+	private volatile boolean running;
+
+	private final NavigableSet<YearMonth> partitions = new ConcurrentSkipListSet<>();
+	// Not a monitor: creating a partition is blocking I/O, which would pin a virtual thread's carrier
+	private final ReentrantLock partitionLock = new ReentrantLock();
+
+	public TransactionHistory(JdbcTemplate jdbcTemplate, DataSource dataSource,
+			@Value("${bankaccounts.history.retention-months:0}") int retentionMonths) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.dataSource = dataSource;
+		this.retentionMonths = retentionMonths;
+	}
+
+	/**
+	 * Picks up the partitions already in the database and creates the upcoming ones.
+	 */
+	@Override
+	public void start() {
+		jdbcTemplate.queryForList("SELECT table_name FROM information_schema.tables "
+				+ "WHERE table_schema = SCHEMA() AND table_name LIKE 'ACCOUNT\\_TRANSACTION\\_%'", String.class)
+				.forEach(table -> partitions.add(YearMonth.parse(table.substring(TABLE_PREFIX.length()), MONTH_SUFFIX)));
+		maintain();
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Ahead of the web server, which starts in a late phase.
+	 */
+	@Override
+	public int getPhase() {
+		return 0;
+	}
+
+	/**
+	 * The time to record an operation at. Milliseconds are enough: entries recorded in the same
+	 * one are ordered by id.
+	 */
+	public Instant now() {
+		return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+	}
+
+	/**
+	 * Writes the entries with one batch insert per month they fall in. Has to run inside the
+	 * transaction that changed the balances.
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void record(List<Transaction> entries) {
+		Map<YearMonth, List<Object[]>> byPartition = new TreeMap<>();
+		for (Transaction entry : entries) {
+			byPartition.computeIfAbsent(partitionOf(entry.recordedAt()), month -> new ArrayList<>())
+					.add(new Object[] { entry.accountId(), entry.type().name(), entry.amount(), entry.balanceAfter(),
+							entry.counterpartyId(), toTimestamp(entry.recordedAt()), entry.dateTime() == null ? null
+									: toTimestamp(entry.dateTime().toInstant()) });
+		}
+		byPartition.forEach((month, rows) -> jdbcTemplate.batchUpdate(insertSql(tableName(month)), rows));
+	}
+
+	/**
+	 * The statement {@link ReactiveTransactionHistory} binds by name: {@code :accountId},
+	 * {@code :type}, {@code :amount}, {@code :balanceAfter}, {@code :counterpartyId},
+	 * {@code :recordedAt} and {@code :dateTime}.
+	 */
+	String namedInsertSql(Instant recordedAt) {
+		return "INSERT INTO " + tableName(partitionOf(recordedAt)) + " (" + COLUMNS + ") VALUES "
+				+ "(NEXT VALUE FOR account_transaction_seq, :accountId, :type, :amount, :balanceAfter, :counterpartyId, "
+				+ ":recordedAt, :dateTime)";
+	}
+
+	/**
+	 * Entries of the account recorded in {@code [from, to)} and after {@code after}, oldest first,
+	 * at most {@code limit} of them. Only the months between {@code from} (or the cursor, when it
+	 * is later) and {@code to} are read, one after the other until the page is full.
+	 *
+	 * @param from  {@code null} for no lower bound
+	 * @param to    {@code null} for no upper bound
+	 * @param after {@code null} for the first page
+	 */
+	public List<Transaction> find(Long accountId, Instant from, Instant to, Cursor after, int limit) {
+		Instant lower = from;
+		if (after != null && (lower == null || after.recordedAt().isAfter(lower))) {
+			lower = after.recordedAt();
+		}
+		NavigableSet<YearMonth> months = partitions;
+		if (lower != null) {
+			months = months.tailSet(monthOf(lower), true);
+		}
+		if (to != null) {
+			months = months.headSet(monthOf(to.minusNanos(1)), true);
+		}
+		List<Transaction> page = new ArrayList<>(limit);
+		for (YearMonth month : months) {
+			Instant start = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+			Instant end = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+			if (lower != null && lower.isAfter(start)) {
+				start = lower;
+			}
+			if (to != null && to.isBefore(end)) {
+				end = to;
+			}
+			String sql = "SELECT " + COLUMNS + " FROM " + tableName(month) + " WHERE account_id = ? "
+					+ "AND recorded_at >= ? AND recorded_at < ? "
+					+ (after != null ? "AND (recorded_at > ? OR id > ?) " : "")
+					+ "ORDER BY recorded_at, id LIMIT ?";
+			List<Object> args = new ArrayList<>(List.of(accountId, toTimestamp(start), toTimestamp(end)));
+			if (after != null) {
+				args.add(toTimestamp(after.recordedAt()));
+				args.add(after.id());
+			}
+			args.add(limit - page.size());
+			page.addAll(jdbcTemplate.query(sql, ROW_MAPPER, args.toArray()));
+			if (page.size() == limit) {
+				break;
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * @return the months that currently have a partition, oldest first
+	 */
+	public List<YearMonth> partitions() {
+		return List.copyOf(partitions);
+	}
+
+	/**
+	 * Drops every partition for a month before {@code month}, with everything recorded in it.
+	 */
+	public List<YearMonth> dropPartitionsBefore(YearMonth month) {
+		List<YearMonth> dropped = new ArrayList<>(partitions.headSet(month, false));
+		for (YearMonth old : dropped) {
+			execute("DROP TABLE IF EXISTS " + tableName(old));
+			partitions.remove(old);
+		}
+		return dropped;
+	}
+
+	/**
+	 * Makes sure the partition for {@code recordedAt} exists; only the first call for a month
+	 * that was not created ahead of time runs any SQL. Operations recorded at {@link #now()}
+	 * always find theirs: the current and the next month are created by maintenance.
+	 */
+	YearMonth partitionOf(Instant recordedAt) {
+		YearMonth month = monthOf(recordedAt);
+		if (!partitions.contains(month)) {
+			createPartition(month);
+		}
+		return month;
+	}
+
+	private void maintain() {
+		YearMonth current = monthOf(now());
+		partitionOf(current.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+		partitionOf(current.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+		if (retentionMonths > 0) {
+			List<YearMonth> dropped = dropPartitionsBefore(current.minusMonths(retentionMonths - 1));
+			if (!dropped.isEmpty()) {
+				log.info("Dropped transaction history partitions {}", dropped);
+			}
+		}
+	}
+
+	@Scheduled(initialDelayString = MAINTENANCE_INTERVAL_MILLIS, fixedDelayString = MAINTENANCE_INTERVAL_MILLIS)
+	void maintainQuietly() {
+		try {
+			maintain();
+		} catch (RuntimeException e) {
+			log.warn("Transaction history maintenance failed, will retry", e);
+		}
+	}
+
+	private void createPartition(YearMonth month) {
+		partitionLock.lock();
+		try {
+			if (!partitions.contains(month)) {
+				createTable(month);
+				partitions.add(month);
+			}
+		} finally {
+			partitionLock.unlock();
+		}
+	}
+
+	private void createTable(YearMonth month) {
+		String table = tableName(month);
+		execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+				+ "id BIGINT PRIMARY KEY, "
+				+ "account_id BIGINT NOT NULL, "
+				+ "type VARCHAR(12) NOT NULL, "
+				+ "amount BIGINT NOT NULL, "
+				+ "balance_after BIGINT NOT NULL, "
+				+ "counterparty_id BIGINT, "
+				+ "recorded_at TIMESTAMP WITH TIME ZONE NOT NULL, "
+				+ "date_time TIMESTAMP WITH TIME ZONE)");
+		execute("CREATE INDEX IF NOT EXISTS " + table + "_account ON " + table + " (account_id, recorded_at, id)");
+	}
+
+	/**
+	 * Runs DDL on a connection of its own, never on one that belongs to a caller's transaction.
+	 */
+	private void execute(String ddl) {
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute(ddl);
+		} catch (SQLException e) {
+			throw new DataAccessResourceFailureException("Could not run " + ddl, e);
+		}
+	}
+
+	private static String insertSql(String table) {
+		return "INSERT INTO " + table + " (" + COLUMNS + ") VALUES (NEXT VALUE FOR account_transaction_seq, ?, ?, ?, ?, ?, ?, ?)";
+	}
+
+	private static String tableName(YearMonth month) {
+		return TABLE_PREFIX + month.format(MONTH_SUFFIX);
+	}
+
+	private static YearMonth monthOf(Instant instant) {
+		return YearMonth.from(instant.atOffset(ZoneOffset.UTC));
+	}
+
+	static OffsetDateTime toTimestamp(Instant instant) {
+		return instant.atOffset(ZoneOffset.UTC);
+	}
+
+	private static final RowMapper<Transaction> ROW_MAPPER = (rs, rowNum) -> {
+		OffsetDateTime dateTime = rs.getObject("date_time", OffsetDateTime.class);
+		long counterpartyId = rs.getLong("counterparty_id");
+		return new Transaction(rs.getLong("id"), rs.getLong("account_id"), Transaction.Type.valueOf(rs.getString("type")),
+				rs.getLong("amount"), rs.getLong("balance_after"), rs.wasNull() ? null : counterpartyId,
+				rs.getObject("recorded_at", OffsetDateTime.class).toInstant(),
+				dateTime == null ? null : Date.from(dateTime.toInstant()));
+	};
+
+	/**
+	 * One change to one account's balance. A transfer is two of them, {@code TRANSFER_OUT} on the
+	 * source and {@code TRANSFER_IN} on the destination, each naming the other account.
+	 *
+	 * @param id           {@code null} until written
+	 * @param amount       how much the balance moved, always positive
+	 * @param balanceAfter the balance right after this change
+	 * @param recordedAt   when the application applied it; decides the partition
+	 * @param dateTime     the {@code dateTime} the client sent with the operation, if any
+	 */
+	public record Transaction(Long id, Long accountId, Type type, @Cents long amount, @Cents long balanceAfter,
+			Long counterpartyId, Instant recordedAt, Date dateTime) {
+
+		public enum Type {
+			DEPOSIT, WITHDRAWAL, TRANSFER_IN, TRANSFER_OUT
+		}
+
+		static Transaction deposit(BankAccount after, long amount, Instant recordedAt, Date dateTime) {
+			return new Transaction(null, after.id(), Type.DEPOSIT, amount, after.amount(), null, recordedAt, dateTime);
+		}
+
+		static Transaction withdrawal(BankAccount after, long amount, Instant recordedAt, Date dateTime) {
+			return new Transaction(null, after.id(), Type.WITHDRAWAL, amount, after.amount(), null, recordedAt, dateTime);
+		}
+
+		/**
+		 * @return the {@code TRANSFER_OUT} and {@code TRANSFER_IN} legs, in that order
+		 */
+		static List<Transaction> transfer(BankAccount sourceAfter, BankAccount destinationAfter, long amount,
+				Instant recordedAt, Date dateTime) {
+			return List.of(
+					new Transaction(null, sourceAfter.id(), Type.TRANSFER_OUT, amount, sourceAfter.amount(),
+							destinationAfter.id(), recordedAt, dateTime),
+					new Transaction(null, destinationAfter.id(), Type.TRANSFER_IN, amount, destinationAfter.amount(),
+							sourceAfter.id(), recordedAt, dateTime));
+		}
+	}
+
+	/**
+	 * Position in an account's history: the (recordedAt, id) of the last entry a client has seen,
+	 * handed out as an opaque base64url string like {@link KeysetCursor}.
+	 */
+	public record Cursor(Instant recordedAt, long id) {
+
+		public static Cursor after(Transaction last) {
+			return new Cursor(last.recordedAt(), last.id());
+		}
+
+		public String encode() {
+			return Base64.getUrlEncoder().withoutPadding()
+					.encodeToString((recordedAt.toEpochMilli() + ":" + id).getBytes(StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * @throws IllegalArgumentException if {@code cursor} was not produced by {@link #encode()}
+		 */
+		public static Cursor decode(String cursor) {
+			String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int separator = decoded.lastIndexOf(':');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Malformed cursor");
+			}
+			return new Cursor(Instant.ofEpochMilli(Long.parseLong(decoded.substring(0, separator))),
+					Long.parseLong(decoded.substring(separator + 1)));
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.capmation.challenge1;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs a unit of work in its own transaction and retries it when the database reports a
+ * lock timeout, deadlock or serialization failure. Retries wait an exponentially growing,
+ * jittered delay capped at {@code maxBackoffMillis}.
+ */
+@Component
+public class TransactionRetrier {
+
+	private final TransactionTemplate transactionTemplate;
+	private final int maxAttempts;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+
+	private final AtomicLong conflicts = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong exhausted = new AtomicLong();
+
+	public TransactionRetrier(PlatformTransactionManager transactionManager,
+			@Value("${bankaccounts.retry.max-attempts:5}") int maxAttempts,
+			@Value("${bankaccounts.retry.initial-backoff-ms:5}") long initialBackoffMillis,
+			@Value("${bankaccounts.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	public <T> T execute(TransactionCallback<T> work) {
+		long backoff = initialBackoffMillis;
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return transactionTemplate.execute(work);
+			} catch (ConcurrencyFailureException e) {
+				conflicts.incrementAndGet();
+				if (attempt >= maxAttempts) {
+					exhausted.incrementAndGet();
+					throw e;
+				}
+				retries.incrementAndGet();
+				sleep(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+				backoff = Math.min(backoff * 2, maxBackoffMillis);
+			}
+		}
+	}
+
+	public RetryStats stats() {
+		return new RetryStats(conflicts.get(), retries.get(), exhausted.get());
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while backing off", e);
+		}
+	}
+
+	/**
+	 * @param conflicts attempts that failed with a concurrency failure
+	 * @param retries   attempts that were started again after a conflict
+	 * @param exhausted operations that gave up after {@code maxAttempts}
+	 */
+	public record RetryStats(long conflicts, long retries, long exhausted) {
+	}
+}
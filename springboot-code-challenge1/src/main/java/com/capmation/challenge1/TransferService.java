@@ -0,0 +1,95 @@
+package com.capmation.challenge1;
+
+import java.util.Date;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Moves money between two accounts in one transaction. Both rows are locked with
+ * {@code SELECT ... FOR UPDATE} in ascending id order, so two transfers running in opposite
+ * directions between the same pair of accounts always queue on the same row first and cannot
+ * deadlock each other. The owners' totals in {@link OwnerBalances} move, and both legs are
+ * written to {@link TransactionHistory}, in the same transaction.
+ */
+@Service
+public class TransferService {
+
+	private final BankAccountRepository bankAccountRepository;
+	private final OwnerBalances ownerBalances;
+	private final BankAccountCache bankAccountCache;
+	private final TransactionRetrier transactionRetrier;
+	private final TransactionHistory transactionHistory;
+	private final Timer lockWait;
+
+	public TransferService(BankAccountRepository bankAccountRepository, OwnerBalances ownerBalances,
+			BankAccountCache bankAccountCache, TransactionRetrier transactionRetrier,
+			TransactionHistory transactionHistory, MeterRegistry meterRegistry) {
+		this.bankAccountRepository = bankAccountRepository;
+		this.ownerBalances = ownerBalances;
+		this.bankAccountCache = bankAccountCache;
+		this.transactionRetrier = transactionRetrier;
+		this.transactionHistory = transactionHistory;
+		this.lockWait = Timer.builder("bankaccounts.lock.wait").tag("path", "transfer")
+				.description("Time to acquire the locks a mutation needs")
+				.register(meterRegistry);
+	}
+
+	public TransferResult transfer(Long sourceId, Long destinationId, long amount, String owner, Date dateTime) {
+		if (sourceId == null || destinationId == null || sourceId.equals(destinationId)
+				|| amount <= 0) {
+			return TransferResult.of(TransferResult.Status.INVALID);
+		}
+		TransferResult result = transactionRetrier.execute(tx -> {
+			Timer.Sample locking = Timer.start();
+			BankAccount first = bankAccountRepository.lockById(Math.min(sourceId, destinationId));
+			BankAccount second = bankAccountRepository.lockById(Math.max(sourceId, destinationId));
+			locking.stop(lockWait);
+			BankAccount source = sourceId < destinationId ? first : second;
+			BankAccount destination = sourceId < destinationId ? second : first;
+
+			if (source == null || destination == null || !source.owner().equalsIgnoreCase(owner)) {
+				return TransferResult.of(TransferResult.Status.NOT_FOUND);
+			}
+			if (source.amount() < amount) {
+				return TransferResult.of(TransferResult.Status.INSUFFICIENT_FUNDS);
+			}
+			if (!Money.canAdd(destination.amount(), amount)) {
+				return TransferResult.of(TransferResult.Status.INVALID);
+			}
+			BankAccount sourceAfter = bankAccountRepository.addToBalance(sourceId, -amount);
+			BankAccount destinationAfter = bankAccountRepository.addToBalance(destinationId, amount);
+			SortedMap<OwnerBalances.Key, OwnerBalances.Delta> deltas = new TreeMap<>();
+			OwnerBalances.Delta.add(deltas, OwnerBalances.Key.of(source), 0, -amount);
+			OwnerBalances.Delta.add(deltas, OwnerBalances.Key.of(destination), 0, amount);
+			ownerBalances.applyAll(deltas);
+			transactionHistory.record(TransactionHistory.Transaction.transfer(sourceAfter, destinationAfter, amount,
+					transactionHistory.now(), dateTime));
+			return new TransferResult(TransferResult.Status.COMPLETED, sourceAfter, destinationAfter);
+		});
+		if (result.status() == TransferResult.Status.COMPLETED) {
+			bankAccountCache.evict(result.source().id(), result.source().owner());
+			bankAccountCache.evict(result.destination().id(), result.destination().owner());
+		}
+		return result;
+	}
+
+	/**
+	 * @param source      the source account after the transfer, only set when {@code COMPLETED}
+	 * @param destination the destination account after the transfer, only set when {@code COMPLETED}
+	 */
+	public record TransferResult(Status status, BankAccount source, BankAccount destination) {
+
+		public enum Status {
+			COMPLETED, NOT_FOUND, INSUFFICIENT_FUNDS, INVALID
+		}
+
+		static TransferResult of(Status status) {
+			return new TransferResult(status, null, null);
+		}
+	}
+}
@@ -2,6 +2,8 @@ package com.capmation.challenge1;
 
 import java.util.Date;
 
-public record TransferenceRecord(Long destinationId, Double amount, Date dateTime) {
+import com.capmation.challenge1.Money.Cents;
+
+public record TransferenceRecord(Long destinationId, @Cents long amount, Date dateTime) {
 
 }
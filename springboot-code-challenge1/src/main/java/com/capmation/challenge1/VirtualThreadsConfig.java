@@ -0,0 +1,58 @@
+package com.capmation.challenge1;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * Serves every request on a virtual thread of its own instead of Tomcat's pool of platform
+ * threads ({@code bankaccounts.virtual-threads.enabled=true}), so thousands of requests can wait
+ * on the database at once without as many platform threads. The JDBC calls behind
+ * {@link BankAccountController} run on the request thread and therefore on virtual threads too;
+ * concurrent queries are then bounded by the connection pool
+ * ({@code spring.datasource.hikari.maximum-pool-size}) rather than by {@code server.tomcat.threads.max}.
+ * <p>
+ * The build targets Java 17, so the executor is looked up reflectively and startup fails on a
+ * JVM older than 21.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bankaccounts.virtual-threads.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class VirtualThreadsConfig {
+
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService virtualThreadExecutor() {
+		return newVirtualThreadPerTaskExecutor();
+	}
+
+	@Bean
+	public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(
+			ExecutorService virtualThreadExecutor) {
+		return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+	}
+
+	/**
+	 * Exports ({@code StreamingResponseBody}) are written from Spring MVC's async executor, not
+	 * from the request thread.
+	 */
+	@Bean(name = "applicationTaskExecutor")
+	public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+		return new TaskExecutorAdapter(virtualThreadExecutor);
+	}
+
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			throw new IllegalStateException("Virtual threads need Java 21 or later, running on " + Runtime.version(), e);
+		}
+	}
+}
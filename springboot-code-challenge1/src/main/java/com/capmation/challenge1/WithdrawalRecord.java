@@ -2,6 +2,8 @@ package com.capmation.challenge1;
 
 import java.util.Date;
 
-public record WithdrawalRecord(Long id, Double amount, Date dateTime) {
+import com.capmation.challenge1.Money.Cents;
+
+public record WithdrawalRecord(Long id, @Cents long amount, Date dateTime) {
 
 }
@@ -0,0 +1,175 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.capmation.challenge1.AdmissionControl.Budget;
+import com.capmation.challenge1.AdmissionControl.Decision;
+import com.capmation.challenge1.AdmissionControl.Limits;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.Filter;
+
+// Mutation buckets that refill far slower than the test runs, so every refusal is deterministic
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"bankaccounts.admission.enabled=true", "bankaccounts.admission.mutations.rate=0.01",
+		"bankaccounts.admission.mutations.burst=3" })
+class AdmissionControlTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Test
+	void shouldShedAPrincipalsMutationsOverItsBudgetWithoutTouchingOthers() {
+		List<HttpStatus> statuses = new ArrayList<>();
+		ResponseEntity<Void> refused = null;
+		for (int i = 0; i < 5; i++) {
+			refused = deposit("user2", "user2$$pwd", 1004L);
+			statuses.add(HttpStatus.valueOf(refused.getStatusCode().value()));
+		}
+
+		assertThat(statuses).containsExactly(HttpStatus.OK, HttpStatus.OK, HttpStatus.OK,
+				HttpStatus.TOO_MANY_REQUESTS, HttpStatus.TOO_MANY_REQUESTS);
+		// 100 seconds until the next token at 0.01 per second
+		assertThat(Long.parseLong(refused.getHeaders().getFirst(HttpHeaders.RETRY_AFTER))).isBetween(90L, 100L);
+		// Reads have a budget of their own, and other principals a bucket of their own
+		assertThat(as("user2", "user2$$pwd").getForEntity("/bankaccounts/1004", String.class)
+				.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(deposit("user1", "user1$$pwd", 1002L).getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(meterRegistry.get("bankaccounts.admission.shed").tag("budget", "mutations").tag("reason", "rate")
+				.counter().count()).isGreaterThanOrEqualTo(2);
+	}
+
+	@Test
+	void shouldShedBeforeCheckingTheCredentials() {
+		List<HttpStatus> statuses = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			statuses.add(HttpStatus.valueOf(deposit("intruder", "wrong", 1002L).getStatusCode().value()));
+		}
+
+		assertThat(statuses).containsExactly(HttpStatus.UNAUTHORIZED, HttpStatus.UNAUTHORIZED, HttpStatus.UNAUTHORIZED,
+				HttpStatus.TOO_MANY_REQUESTS);
+	}
+
+	@Test
+	void shouldQueueForAFreeSlotAndShedWhenNoneFreesUp() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AdmissionControl admissionControl = new AdmissionControl(new Limits(1000, 1000, 1), new Limits(1000, 1000, 1),
+				Duration.ofMillis(200), 100, registry);
+
+		Decision first = admissionControl.admit("a", Budget.READS, true);
+		Decision waitedInVain = admissionControl.admit("b", Budget.READS, true);
+		Decision notQueued = admissionControl.admit("b", Budget.READS, false);
+		Thread releaser = new Thread(() -> {
+			sleep(50);
+			first.ticket().release();
+		});
+		releaser.start();
+		Decision waitedForTheSlot = admissionControl.admit("b", Budget.READS, true);
+		releaser.join();
+
+		assertThat(first.isAdmitted()).isTrue();
+		assertThat(waitedInVain.isAdmitted()).isFalse();
+		assertThat(waitedInVain.retryAfterSeconds()).isEqualTo(1);
+		assertThat(notQueued.isAdmitted()).isFalse();
+		assertThat(waitedForTheSlot.isAdmitted()).isTrue();
+		// Mutations do not share the read slot
+		assertThat(admissionControl.admit("b", Budget.MUTATIONS, false).isAdmitted()).isTrue();
+		assertThat(registry.get("bankaccounts.admission.queued").tag("budget", "reads").timer().count()).isEqualTo(2);
+		assertThat(registry.get("bankaccounts.admission.shed").tag("budget", "reads").tag("reason", "concurrency")
+				.counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldHoldTheSlotOfAnAsyncRequestUntilItCompletes() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AdmissionControl admissionControl = new AdmissionControl(new Limits(1000, 1000, 1), new Limits(1000, 1000, 1),
+				Duration.ZERO, 100, registry);
+		Filter filter = new AdmissionControlConfig().admissionControlFilter(admissionControl).getFilter();
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/bankaccounts/export");
+		request.setAsyncSupported(true);
+
+		filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+
+		assertThat(inFlightReads(registry)).isEqualTo(1);
+		assertThat(admissionControl.admit("other", Budget.READS, false).isAdmitted()).isFalse();
+		((MockAsyncContext) request.getAsyncContext()).complete();
+		assertThat(inFlightReads(registry)).isEqualTo(0);
+	}
+
+	@Test
+	void shouldNotLetAForgedHeaderSpendTheRealUsersBudget() {
+		AdmissionControl admissionControl = new AdmissionControl(new Limits(1000, 1000, 100), new Limits(0.01, 3, 100),
+				Duration.ZERO, 100, new SimpleMeterRegistry());
+		String forged = AdmissionControl.principalOf("Basic " + base64("user1:guess"), "10.0.0.66");
+		String real = AdmissionControl.principalOf("Basic " + base64("user1:user1$$pwd"), "10.0.0.1");
+
+		for (int i = 0; i < 3; i++) {
+			admissionControl.admit(forged, Budget.MUTATIONS, false).ticket().release();
+		}
+
+		assertThat(admissionControl.admit(forged, Budget.MUTATIONS, false).isAdmitted()).isFalse();
+		assertThat(admissionControl.admit(real, Budget.MUTATIONS, false).isAdmitted()).isTrue();
+	}
+
+	@Test
+	void shouldTakeThePrincipalFromTheClaimedUserNameAndTheAddress() {
+		assertThat(AdmissionControl.principalOf("Basic dXNlcjE6dXNlcjEkJHB3ZA==", "10.0.0.1"))
+				.isEqualTo("user:user1@10.0.0.1");
+		assertThat(AdmissionControl.principalOf("Basic not base64!", "10.0.0.1")).isEqualTo("address:10.0.0.1");
+		assertThat(AdmissionControl.principalOf(null, "10.0.0.1")).isEqualTo("address:10.0.0.1");
+	}
+
+	private static String base64(String credentials) {
+		return Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static double inFlightReads(MeterRegistry registry) {
+		return registry.get("bankaccounts.admission.in-flight").tag("budget", "reads").gauge().value();
+	}
+
+	private ResponseEntity<Void> deposit(String user, String password, Long id) {
+		return as(user, password).exchange("/bankaccounts/{id}/deposit", HttpMethod.PATCH,
+				new HttpEntity<>(new DepositRecord(id, 100L, null)), Void.class, id);
+	}
+
+	private TestRestTemplate as(String user, String password) {
+		TestRestTemplate client = restTemplate.withBasicAuth(user, password);
+		// The default client honours Retry-After and silently tries a 429 again
+		client.getRestTemplate().setRequestFactory(
+				new HttpComponentsClientHttpRequestFactory(HttpClients.custom().disableAutomaticRetries().build()));
+		return client;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
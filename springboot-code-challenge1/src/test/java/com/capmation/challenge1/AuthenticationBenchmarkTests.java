@@ -0,0 +1,70 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Authenticated requests per second against a running server with the credential cache disabled
+ * (every request runs BCrypt) and enabled. Wall-clock, so it runs with {@code ./gradlew loadTest}
+ * rather than {@code test}; the jmh {@code PasswordVerificationBenchmark} measures the same in
+ * isolation.
+ */
+@Tag("load")
+class AuthenticationBenchmarkTests {
+
+	private static final int CLIENTS = 4;
+	private static final int REQUESTS = 80;
+
+	@Test
+	void credentialCacheShouldRaiseRequestsPerSecond() throws Exception {
+		double withoutCache = requestsPerSecond(false);
+		double withCache = requestsPerSecond(true);
+
+		assertThat(withCache).as("req/s with the credential cache").isGreaterThan(withoutCache);
+	}
+
+	private static double requestsPerSecond(boolean credentialCache) throws Exception {
+		try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(
+				SpringbootCodeChallenge1Application.class)
+				.properties("server.port=0", "bankaccounts.security.credential-cache.enabled=" + credentialCache)
+				.run()) {
+			RestTemplate client = new RestTemplateBuilder()
+					.rootUri("http://localhost:" + context.getWebServer().getPort())
+					.basicAuthentication("user1", "user1$$pwd")
+					.build();
+			for (int i = 0; i < 10; i++) {
+				client.getForEntity("/bankaccounts/1001", String.class);
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+			try {
+				long start = System.nanoTime();
+				List<Future<HttpStatus>> responses = new ArrayList<>();
+				for (int i = 0; i < REQUESTS; i++) {
+					responses.add(executor.submit(
+							() -> HttpStatus.valueOf(client.getForEntity("/bankaccounts/1001", String.class).getStatusCode().value())));
+				}
+				for (Future<HttpStatus> response : responses) {
+					assertThat(response.get(1, TimeUnit.MINUTES)).isEqualTo(HttpStatus.OK);
+				}
+				return REQUESTS / ((System.nanoTime() - start) / 1e9);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class BankAccountCacheTests {
+
+	private final BankAccountCache cache = new BankAccountCache(100, 100, Duration.ofMinutes(1));
+
+	@Test
+	void shouldLoadOnceAndCountHitsAndMisses() {
+		AtomicInteger loads = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			cache.get(1001L, id -> {
+				loads.incrementAndGet();
+				return new BankAccount(id, 1000L, "SAVINGS", "user1");
+			});
+		}
+
+		assertThat(loads).hasValue(1);
+		assertThat(cache.stats().accounts().misses()).isEqualTo(1);
+		assertThat(cache.stats().accounts().hits()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldReloadAfterEviction() {
+		cache.get(1001L, id -> new BankAccount(id, 1000L, "SAVINGS", "user1"));
+		cache.evict(1001L, "user1");
+
+		BankAccount reloaded = cache.get(1001L, id -> new BankAccount(id, 2000L, "SAVINGS", "user1"));
+
+		assertThat(reloaded.amount()).isEqualTo(2000L);
+	}
+
+	@Test
+	void shouldNotKeepAnAccountReadBeforeAConcurrentWrite() {
+		// The write commits and evicts while the old balance is being read
+		cache.get(1001L, id -> {
+			cache.evict(id, "user1");
+			return new BankAccount(id, 1000L, "SAVINGS", "user1");
+		});
+
+		BankAccount reloaded = cache.get(1001L, id -> new BankAccount(id, 2000L, "SAVINGS", "user1"));
+
+		assertThat(reloaded.amount()).isEqualTo(2000L);
+	}
+
+	@Test
+	void shouldNotCacheMissingAccounts() {
+		cache.get(1009L, id -> null);
+
+		assertThat(cache.get(1009L, id -> new BankAccount(id, 100L, "SAVINGS", "user1"))).isNotNull();
+	}
+
+	@Test
+	void shouldInvalidateAnOwnersPagesOnWrite() {
+		List<BankAccount> first = List.of(new BankAccount(1001L, 1000L, "SAVINGS", "user1"));
+		List<BankAccount> second = List.of(new BankAccount(1001L, 2000L, "SAVINGS", "user1"));
+		cache.getPage("user1", 0, 20, "amount: ASC", () -> first);
+		cache.getPage("user2", 0, 20, "amount: ASC", () -> first);
+
+		cache.evict(1001L, "user1");
+
+		assertThat(cache.getPage("user1", 0, 20, "amount: ASC", () -> second)).isEqualTo(second);
+		assertThat(cache.getPage("user2", 0, 20, "amount: ASC", () -> second)).isEqualTo(first);
+	}
+}
@@ -0,0 +1,68 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class BankAccountConcurrencyTests {
+
+	private static final int THREADS = 32;
+	private static final int DEPOSITS = 4000;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Test
+	void parallelDepositsShouldNotLoseUpdates() throws Exception {
+		BankAccount account = bankAccountRepository.save(new BankAccount(null, 0L, "SAVINGS", "user1"));
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<BankAccount>> results = new ArrayList<>();
+			for (int i = 0; i < DEPOSITS; i++) {
+				results.add(executor.submit(() -> bankAccountRepository.addToBalance(account.id(), 1L)));
+			}
+			for (Future<BankAccount> result : results) {
+				assertThat(result.get(30, TimeUnit.SECONDS)).isNotNull();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(bankAccountRepository.findById(account.id()).orElseThrow().amount()).isEqualTo(DEPOSITS);
+	}
+
+	@Test
+	void parallelWithdrawalsShouldNeverOverdraw() throws Exception {
+		BankAccount account = bankAccountRepository.save(new BankAccount(null, 100L, "SAVINGS", "user1"));
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		int succeeded = 0;
+		try {
+			List<Future<BankAccount>> results = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				results.add(executor.submit(() -> bankAccountRepository.subtractFromBalance(account.id(), "user1", 1L)));
+			}
+			for (Future<BankAccount> result : results) {
+				if (result.get(30, TimeUnit.SECONDS) != null) {
+					succeeded++;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(succeeded).isEqualTo(100);
+		assertThat(bankAccountRepository.findById(account.id()).orElseThrow().amount()).isEqualTo(0L);
+	}
+}
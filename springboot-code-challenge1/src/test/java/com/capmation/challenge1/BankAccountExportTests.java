@@ -0,0 +1,46 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "bankaccounts.export.flush-every=7")
+class BankAccountExportTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Test
+	void shouldExportEveryAccountOfTheOwnerAsOneJsonLineEach() throws Exception {
+		for (int i = 0; i < 50; i++) {
+			bankAccountRepository.save(new BankAccount(null, (long) i, "CHECKING", "user3"));
+		}
+
+		ResponseEntity<String> response = restTemplate.withBasicAuth("user3", "user3$$pwd")
+				.getForEntity("/bankaccounts/export", String.class);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getContentType().toString()).isEqualTo(BankAccountController.NDJSON);
+		List<String> lines = response.getBody().lines().toList();
+		assertThat(lines).hasSize(50);
+		assertThat(response.getBody()).endsWith("\n");
+		for (String line : lines) {
+			assertThat(objectMapper.readValue(line, BankAccount.class).owner()).isEqualTo("user3");
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.capmation.challenge1.BankAccountImporter.IdRange;
+import com.capmation.challenge1.BankAccountImporter.ImportSummary;
+import com.capmation.challenge1.BankAccountImporter.RejectedLine;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "bankaccounts.import.chunk-size=7")
+class BankAccountImportTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Autowired
+	OwnerBalances ownerBalances;
+
+	@Test
+	void shouldImportEveryValidCsvLineInChunks() {
+		StringBuilder csv = new StringBuilder("amount,accountType,owner\n");
+		for (int i = 0; i < 20; i++) {
+			csv.append(i).append(".50,CHECKING,importer-csv\n");
+		}
+		csv.append("-1.00,CHECKING,importer-csv\n");
+		csv.append("1.001,CHECKING,importer-csv\n");
+		csv.append("\"5.00\",\"SAVINGS\",\"importer-csv\"\n");
+		csv.append("not a line\n");
+
+		ImportSummary summary = post(csv.toString(), BankAccountController.CSV);
+
+		assertThat(summary.created()).isEqualTo(21);
+		assertThat(summary.createdIds().stream().mapToLong(r -> r.last() - r.first() + 1).sum()).isEqualTo(21);
+		assertThat(summary.rejected()).isEqualTo(3);
+		assertThat(summary.rejectedLines()).extracting(RejectedLine::line).containsExactly(22L, 23L, 25L);
+		assertThat(accountsOf("importer-csv")).hasSize(21);
+		IdRange first = summary.createdIds().get(0);
+		assertThat(bankAccountRepository.findById(first.first())).hasValueSatisfying(account -> {
+			assertThat(account.amount()).isEqualTo(50L);
+			assertThat(account.owner()).isEqualTo("importer-csv");
+		});
+
+		OwnerBalances.OwnerSummary balances = ownerBalances.summary("importer-csv");
+		assertThat(balances.accounts()).isEqualTo(21);
+		// 0.50 + 1.50 + ... + 19.50, plus 5.00
+		assertThat(balances.total()).isEqualTo(20_000L + 500L);
+		assertThat(balances.byAccountType().get("SAVINGS").accounts()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldImportNdjsonAndRejectLinesWithAnId() {
+		String ndjson = """
+				{"amount": 10.00, "accountType": "SAVINGS", "owner": "importer-json"}
+				{"amount": 20.00, "owner": "importer-json"}
+				{"id": 99, "amount": 30.00, "accountType": "SAVINGS", "owner": "importer-json"}
+				{"amount": "lots", "owner": "importer-json"}
+				""";
+
+		ImportSummary summary = post(ndjson, BankAccountController.NDJSON);
+
+		assertThat(summary.created()).isEqualTo(2);
+		assertThat(summary.rejectedLines()).extracting(RejectedLine::line).containsExactly(3L, 4L);
+		List<BankAccount> imported = accountsOf("importer-json");
+		assertThat(imported).extracting(BankAccount::accountType).containsExactly("SAVINGS", "SAVINGS");
+		assertThat(ownerBalances.summary("importer-json").total()).isEqualTo(3_000L);
+	}
+
+	private List<BankAccount> accountsOf(String owner) {
+		return bankAccountRepository.findByOwner(owner, PageRequest.of(0, 100, Sort.by("id"))).getContent();
+	}
+
+	private ImportSummary post(String body, String contentType) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType(contentType));
+		ResponseEntity<ImportSummary> response = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.postForEntity("/bankaccounts/import", new HttpEntity<>(body, headers), ImportSummary.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		return response.getBody();
+	}
+}
@@ -0,0 +1,93 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.capmation.challenge1.BatchOperationRecord.Type;
+import com.capmation.challenge1.BatchOperationService.ItemResult;
+import com.capmation.challenge1.BatchOperationService.Status;
+
+@SpringBootTest(properties = "bankaccounts.batch.chunk-size=100")
+class BatchOperationServiceTests {
+
+	@Autowired
+	BatchOperationService batchOperationService;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Test
+	void shouldApplyOperationsInOrder() {
+		Long a = newAccount(0L, "user1");
+		Long b = newAccount(0L, "user2");
+
+		List<ItemResult> results = batchOperationService.apply(List.of(
+				new BatchOperationRecord(Type.DEPOSIT, a, null, 10000L, null),
+				new BatchOperationRecord(Type.WITHDRAWAL, a, null, 3000L, null),
+				new BatchOperationRecord(Type.TRANSFER, a, b, 5000L, null)), "user1", true);
+
+		assertThat(results).extracting(ItemResult::status).containsOnly(Status.APPLIED);
+		assertThat(amount(a)).isEqualTo(2000L);
+		assertThat(amount(b)).isEqualTo(5000L);
+	}
+
+	@Test
+	void atomicBatchShouldRollBackEverythingWhenOneOperationFails() {
+		Long a = newAccount(1000L, "user1");
+
+		List<ItemResult> results = batchOperationService.apply(List.of(
+				new BatchOperationRecord(Type.DEPOSIT, a, null, 500L, null),
+				new BatchOperationRecord(Type.WITHDRAWAL, a, null, 50000L, null),
+				new BatchOperationRecord(Type.DEPOSIT, 999_999L, null, 500L, null)), "user1", true);
+
+		assertThat(results).extracting(ItemResult::status)
+				.containsExactly(Status.ROLLED_BACK, Status.INSUFFICIENT_FUNDS, Status.NOT_FOUND);
+		assertThat(amount(a)).isEqualTo(1000L);
+	}
+
+	@Test
+	void perItemBatchShouldSkipOnlyFailedOperations() {
+		Long a = newAccount(1000L, "user1");
+		Long other = newAccount(1000L, "user2");
+
+		List<ItemResult> results = batchOperationService.apply(List.of(
+				new BatchOperationRecord(Type.DEPOSIT, a, null, 500L, null),
+				new BatchOperationRecord(Type.WITHDRAWAL, other, null, 500L, null),
+				new BatchOperationRecord(Type.WITHDRAWAL, a, null, -100L, null),
+				new BatchOperationRecord(Type.WITHDRAWAL, a, null, 1500L, null)), "user1", false);
+
+		assertThat(results).extracting(ItemResult::status)
+				.containsExactly(Status.APPLIED, Status.NOT_FOUND, Status.INVALID, Status.APPLIED);
+		assertThat(amount(a)).isEqualTo(0L);
+		assertThat(amount(other)).isEqualTo(1000L);
+	}
+
+	@Test
+	void shouldApplyBatchesLargerThanOneChunk() {
+		Long a = newAccount(0L, "user1");
+		List<BatchOperationRecord> operations = new ArrayList<>();
+		for (int i = 0; i < 1050; i++) {
+			operations.add(new BatchOperationRecord(Type.DEPOSIT, a, null, 100L, null));
+		}
+
+		List<ItemResult> results = batchOperationService.apply(operations, "user1", false);
+
+		assertThat(results).hasSize(1050);
+		assertThat(results.get(1049).index()).isEqualTo(1049);
+		assertThat(amount(a)).isEqualTo(105000L);
+	}
+
+	private Long newAccount(long amount, String owner) {
+		return bankAccountRepository.save(new BankAccount(null, amount, "SAVINGS", owner)).id();
+	}
+
+	private long amount(Long id) {
+		return bankAccountRepository.findById(id).orElseThrow().amount();
+	}
+}
@@ -0,0 +1,95 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+class CachingAuthenticationProviderTests {
+
+	private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+	private final CountingEncoder countingEncoder = new CountingEncoder(passwordEncoder);
+	private InMemoryUserDetailsManager users;
+	private CachingAuthenticationProvider provider;
+
+	@BeforeEach
+	void setUp() {
+		users = new InMemoryUserDetailsManager(user("secret"));
+		DaoAuthenticationProvider bcrypt = new DaoAuthenticationProvider();
+		bcrypt.setUserDetailsService(users);
+		bcrypt.setPasswordEncoder(countingEncoder);
+		provider = new CachingAuthenticationProvider(bcrypt, users, Duration.ofMinutes(5), 100);
+	}
+
+	@Test
+	void shouldVerifyWithBCryptOnlyOnce() {
+		for (int i = 0; i < 5; i++) {
+			assertThat(provider.authenticate(token("secret")).isAuthenticated()).isTrue();
+		}
+
+		assertThat(countingEncoder.matches).isEqualTo(1);
+	}
+
+	@Test
+	void shouldNotAcceptAWrongPasswordForACachedUser() {
+		provider.authenticate(token("secret"));
+
+		assertThatThrownBy(() -> provider.authenticate(token("wrong"))).isInstanceOf(BadCredentialsException.class);
+	}
+
+	@Test
+	void shouldDropTheEntryWhenThePasswordChanges() {
+		provider.authenticate(token("secret"));
+		users.updateUser(user("changed"));
+
+		assertThatThrownBy(() -> provider.authenticate(token("secret"))).isInstanceOf(BadCredentialsException.class);
+		assertThat(provider.authenticate(token("changed")).isAuthenticated()).isTrue();
+	}
+
+	@Test
+	void shouldDropTheEntryWhenTheUserIsDisabled() {
+		provider.authenticate(token("secret"));
+		users.updateUser(User.withUserDetails(users.loadUserByUsername("user1")).disabled(true).build());
+
+		assertThatThrownBy(() -> provider.authenticate(token("secret"))).isInstanceOf(DisabledException.class);
+	}
+
+	private User user(String password) {
+		return (User) User.withUsername("user1").password(passwordEncoder.encode(password)).roles("ACCOUNT-OWNER").build();
+	}
+
+	private static UsernamePasswordAuthenticationToken token(String password) {
+		return UsernamePasswordAuthenticationToken.unauthenticated("user1", password);
+	}
+
+	private static class CountingEncoder implements PasswordEncoder {
+		private final PasswordEncoder delegate;
+		private int matches;
+
+		CountingEncoder(PasswordEncoder delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public String encode(CharSequence rawPassword) {
+			return delegate.encode(rawPassword);
+		}
+
+		@Override
+		public boolean matches(CharSequence rawPassword, String encodedPassword) {
+			matches++;
+			return delegate.matches(rawPassword, encodedPassword);
+		}
+	}
+}
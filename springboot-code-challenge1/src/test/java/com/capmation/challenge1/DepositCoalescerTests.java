@@ -0,0 +1,66 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = { "bankaccounts.coalescing.enabled=true", "bankaccounts.coalescing.window=20ms",
+		"bankaccounts.coalescing.max-batch=16" })
+class DepositCoalescerTests {
+
+	private static final int THREADS = 32;
+	private static final int DEPOSITS = 1000;
+
+	@Autowired
+	DepositCoalescer depositCoalescer;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Test
+	void concurrentDepositsShouldBeAppliedTogetherWithOwnBalances() throws Exception {
+		BankAccount account = bankAccountRepository.save(new BankAccount(null, 0L, "SAVINGS", "user1"));
+		DepositCoalescer.CoalescingStats before = depositCoalescer.stats();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		Set<Long> balances = new TreeSet<>();
+		try {
+			List<Future<BankAccount>> results = new ArrayList<>();
+			for (int i = 0; i < DEPOSITS; i++) {
+				results.add(executor.submit(() -> depositCoalescer.deposit(account.id(), 1L, null)));
+			}
+			for (Future<BankAccount> result : results) {
+				BankAccount after = result.get(30, TimeUnit.SECONDS);
+				assertThat(after.owner()).isEqualTo("user1");
+				balances.add(after.amount());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// Every caller saw a different balance: the one right after its own deposit
+		assertThat(balances).hasSize(DEPOSITS).first().isEqualTo(1L);
+		assertThat(balances).last().isEqualTo((long) DEPOSITS);
+		assertThat(bankAccountRepository.findById(account.id()).orElseThrow().amount()).isEqualTo(DEPOSITS);
+
+		DepositCoalescer.CoalescingStats after = depositCoalescer.stats();
+		assertThat(after.operations() - before.operations()).isEqualTo(DEPOSITS);
+		assertThat(after.updates() - before.updates()).isLessThan(DEPOSITS);
+	}
+
+	@Test
+	void shouldReturnNullForAnUnknownAccount() {
+		assertThat(depositCoalescer.deposit(99999L, 1L, null)).isNull();
+	}
+}
@@ -0,0 +1,57 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class KeysetPaginationTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Test
+	void shouldWalkEveryAccountExactlyOnceInAmountAndIdOrder() {
+		List<BankAccount> expected = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			// Only five distinct amounts, so most page boundaries fall between equal amounts
+			expected.add(bankAccountRepository.save(new BankAccount(null, (long) (i % 5), "SAVINGS", "user3")));
+		}
+		expected.sort(Comparator.comparingLong(BankAccount::amount).thenComparing(BankAccount::id));
+
+		List<BankAccount> seen = new ArrayList<>();
+		String cursor = "";
+		int pages = 0;
+		while (cursor != null) {
+			ResponseEntity<BankAccount[]> response = restTemplate.withBasicAuth("user3", "user3$$pwd")
+					.getForEntity("/bankaccounts?size=10&cursor={cursor}", BankAccount[].class, cursor);
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+			seen.addAll(List.of(response.getBody()));
+			cursor = response.getHeaders().getFirst(BankAccountController.NEXT_CURSOR_HEADER);
+			pages++;
+		}
+
+		assertThat(pages).isEqualTo(3);
+		assertThat(seen).containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	void shouldRejectAMalformedCursor() {
+		ResponseEntity<String> response = restTemplate.withBasicAuth("user3", "user3$$pwd")
+				.getForEntity("/bankaccounts?cursor=not-a-cursor", String.class);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+}
@@ -0,0 +1,127 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.capmation.challenge1.LedgerJournal.Entry;
+import com.capmation.challenge1.LedgerJournal.Type;
+
+class LedgerJournalTests {
+
+	private static final int SEGMENT_SIZE = LedgerJournal.RECORD_SIZE * 10;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void shouldReplayAcknowledgedEntriesAcrossSegments() throws Exception {
+		LedgerJournal journal = open(0);
+		List<CompletableFuture<Long>> acks = new ArrayList<>();
+		for (int i = 1; i <= 25; i++) {
+			acks.add(journal.append(deposit(i)));
+		}
+		for (CompletableFuture<Long> ack : acks) {
+			ack.join();
+		}
+		journal.halt();
+
+		List<Entry> replayed = new ArrayList<>();
+		LedgerJournal reopened = new LedgerJournal(directory, SEGMENT_SIZE, 8, Duration.ZERO);
+		assertThat(reopened.recover(20, replayed::add)).isEqualTo(25);
+
+		assertThat(replayed).extracting(Entry::seq).containsExactly(21L, 22L, 23L, 24L, 25L);
+		assertThat(replayed.get(4).balanceAfter()).isEqualTo(25L);
+		assertThat(segments()).hasSize(3);
+	}
+
+	@Test
+	void shouldIgnoreATornRecordAndContinueAfterTheLastIntactOne() throws Exception {
+		LedgerJournal journal = open(0);
+		for (int i = 1; i <= 3; i++) {
+			journal.append(deposit(i)).join();
+		}
+		journal.halt();
+		// A fourth record whose write was cut short: right sequence number, wrong checksum
+		try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(12).putLong(4L).putInt(42).flip(), 3L * LedgerJournal.RECORD_SIZE);
+		}
+
+		List<Entry> replayed = new ArrayList<>();
+		LedgerJournal reopened = new LedgerJournal(directory, SEGMENT_SIZE, 8, Duration.ZERO);
+		assertThat(reopened.recover(0, replayed::add)).isEqualTo(3);
+		reopened.start(entries -> {
+		});
+		assertThat(reopened.append(deposit(4)).join()).isEqualTo(4L);
+		reopened.close();
+
+		assertThat(replayed).hasSize(3);
+		List<Entry> afterRestart = new ArrayList<>();
+		new LedgerJournal(directory, SEGMENT_SIZE, 8, Duration.ZERO).recover(0, afterRestart::add);
+		assertThat(afterRestart).extracting(Entry::balanceAfter).containsExactly(1L, 2L, 3L, 4L);
+	}
+
+	@Test
+	void shouldForceConcurrentAppendsInGroups() throws Exception {
+		LedgerJournal journal = new LedgerJournal(directory, LedgerJournal.RECORD_SIZE * 10_000, 256, Duration.ofMillis(5));
+		journal.recover(0, e -> {
+		});
+		journal.start(entries -> {
+		});
+		List<CompletableFuture<Long>> acks = new ArrayList<>();
+		for (int i = 1; i <= 2000; i++) {
+			acks.add(journal.append(deposit(i)));
+		}
+		CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).join();
+		journal.close();
+
+		assertThat(journal.stats().entries()).isEqualTo(2000);
+		assertThat(journal.stats().groups()).isLessThan(2000);
+	}
+
+	@Test
+	void shouldDeleteSegmentsCoveredByACheckpoint() throws Exception {
+		LedgerJournal journal = open(0);
+		for (int i = 1; i <= 25; i++) {
+			journal.append(deposit(i)).join();
+		}
+
+		journal.deleteUpTo(20);
+		journal.close();
+
+		// 1-10 and 11-20 are covered, 21-25 is still needed
+		assertThat(segments()).hasSize(1);
+	}
+
+	private LedgerJournal open(long afterSeq) throws IOException {
+		LedgerJournal journal = new LedgerJournal(directory, SEGMENT_SIZE, 8, Duration.ZERO);
+		journal.recover(afterSeq, e -> {
+		});
+		journal.start(entries -> {
+		});
+		return journal;
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.sorted().toList();
+		}
+	}
+
+	private static Entry deposit(long balanceAfter) {
+		return new Entry(0, Type.DEPOSIT, 1001L, 1L, balanceAfter, 0, 0, System.currentTimeMillis(), Entry.NO_DATE_TIME);
+	}
+}
@@ -0,0 +1,103 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.capmation.challenge1.TransactionHistory.Transaction;
+import com.capmation.challenge1.TransferService.TransferResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest
+@DirtiesContext
+class LedgerRecoveryTests {
+
+	private static Path journalDirectory;
+
+	@DynamicPropertySource
+	static void ledgerProperties(DynamicPropertyRegistry registry) throws IOException {
+		journalDirectory = Files.createTempDirectory("ledger");
+		registry.add("bankaccounts.ledger.enabled", () -> "true");
+		registry.add("bankaccounts.ledger.directory", journalDirectory::toString);
+		registry.add("bankaccounts.ledger.segment-size", () -> "4KB");
+		// No checkpoint during the test: everything has to come back from the journal
+		registry.add("bankaccounts.ledger.checkpoint-interval", () -> "1h");
+	}
+
+	@Autowired
+	Ledger ledger;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	OwnerBalances ownerBalances;
+
+	@Autowired
+	TransactionHistory transactionHistory;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void shouldRecoverAcknowledgedBalancesAfterACrash() throws Exception {
+		Long a = bankAccountRepository.save(new BankAccount(null, 100L, "SAVINGS", "user1")).id();
+		Long b = bankAccountRepository.save(new BankAccount(null, 0L, "SAVINGS", "user2")).id();
+
+		Instant before = transactionHistory.now();
+		Date clientTime = Date.from(Instant.parse("2001-01-01T00:00:00Z"));
+		for (int i = 0; i < 100; i++) {
+			ledger.deposit(a, 1L, i == 0 ? clientTime : null);
+		}
+		assertThat(ledger.withdraw(a, "user1", 20L, null).amount()).isEqualTo(180L);
+		TransferResult transfer = ledger.transfer(a, b, 30L, "user1", null);
+		assertThat(transfer.status()).isEqualTo(TransferResult.Status.COMPLETED);
+
+		// Acknowledged, but not checkpointed yet
+		assertThat(bankAccountRepository.findById(a).orElseThrow().amount()).isEqualTo(100L);
+
+		ledger.halt();
+		Ledger restarted = new Ledger(new LedgerJournal(journalDirectory, 4096, 512, Duration.ofMillis(2)),
+				bankAccountRepository, jdbcTemplate, ownerBalances, transactionHistory, new TransactionTemplate(transactionManager),
+				Duration.ofHours(1), Duration.ofSeconds(5), new SimpleMeterRegistry());
+		try {
+			assertThat(bankAccountRepository.findById(a).orElseThrow().amount()).isEqualTo(150L);
+			assertThat(bankAccountRepository.findById(b).orElseThrow().amount()).isEqualTo(30L);
+			// The history of the replayed operations is written with that checkpoint, once
+			List<Transaction> history = transactionHistory.find(a, null, null, null, 1000);
+			assertThat(history).hasSize(102);
+			// At the server time of the operation, like a live checkpoint, whatever the client sent
+			assertThat(history).extracting(Transaction::recordedAt)
+					.allSatisfy(recordedAt -> assertThat(recordedAt).isBetween(before, transactionHistory.now()));
+			assertThat(history).extracting(Transaction::dateTime).filteredOn(Objects::nonNull).containsExactly(clientTime);
+			assertThat(transactionHistory.find(b, null, null, null, 1000)).hasSize(1);
+
+			// Mutations continue from the recovered state
+			assertThat(restarted.deposit(b, 5L, null).amount()).isEqualTo(35L);
+		} finally {
+			restarted.close();
+		}
+		assertThat(bankAccountRepository.findById(b).orElseThrow().amount()).isEqualTo(35L);
+	}
+}
@@ -0,0 +1,425 @@
+package com.capmation.challenge1;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Starts the application on embedded H2 and drives it over HTTP from many concurrent clients
+ * with a weighted mix of reads, deposits, withdrawals and transfers against a small set of
+ * accounts, so that most operations contend on the same rows.
+ * <p>
+ * Latencies are recorded per operation in HdrHistograms once the warm-up is over. Every client
+ * also keeps the net effect of each request that succeeded, which is all that is needed to
+ * check the books afterwards: the total must equal the starting total plus deposits minus
+ * withdrawals, no balance may be negative, and every account must hold exactly its starting
+ * balance plus the acknowledged changes to it, so no update was lost.
+ */
+class LoadTestHarness {
+
+	private static final String[][] OWNERS = { { "user1", "user1$$pwd" }, { "user2", "user2$$pwd" } };
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	// Tomcat connector and workers, Reactor Netty event loops and the Reactor schedulers
+	private static final String[] SERVER_THREAD_PREFIXES = { "http-nio-", "reactor-http-", "boundedElastic-", "parallel-" };
+
+	enum Operation {
+		READ, DEPOSIT, WITHDRAWAL, TRANSFER
+	}
+
+	/**
+	 * @param mix           relative weight of each operation
+	 * @param appProperties extra properties for the application under test, e.g. to enable ledger mode
+	 */
+	record Config(int clients, Duration warmup, Duration duration, int accountsPerOwner, long initialBalance,
+			long maxAmount, Map<Operation, Integer> mix, List<String> appProperties) {
+
+		/**
+		 * Reads {@code load.*} system properties, falling back to a short run suitable for a laptop.
+		 */
+		static Config fromSystemProperties() {
+			Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+			for (String weight : System.getProperty("load.mix", "read:40,deposit:20,withdrawal:20,transfer:20").split(",")) {
+				String[] parts = weight.split(":");
+				mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+			}
+			String appProperties = System.getProperty("load.app-properties", "");
+			return new Config(Integer.getInteger("load.clients", 16),
+					Duration.parse("PT" + System.getProperty("load.warmup", "2s")),
+					Duration.parse("PT" + System.getProperty("load.duration", "10s")),
+					Integer.getInteger("load.accounts-per-owner", 4),
+					Long.getLong("load.initial-balance", 1_000_000L),
+					Long.getLong("load.max-amount", 10_000L),
+					mix,
+					appProperties.isBlank() ? List.of() : List.of(appProperties.split(",")));
+		}
+
+		/**
+		 * The same run with another number of clients and some more application properties.
+		 */
+		Config with(int clients, String... moreAppProperties) {
+			return new Config(clients, warmup, duration, accountsPerOwner, initialBalance, maxAmount, mix,
+					Stream.concat(appProperties.stream(), Stream.of(moreAppProperties)).toList());
+		}
+	}
+
+	private final Config config;
+	private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+	private String baseUrl;
+	private Account[] accounts;
+
+	LoadTestHarness(Config config) {
+		this.config = config;
+	}
+
+	Report run() throws Exception {
+		// Servlet or reactive, depending on the profile in appProperties
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+				SpringbootCodeChallenge1Application.class)
+				.properties("server.port=0", "logging.level.root=WARN")
+				.properties(config.appProperties().toArray(String[]::new))
+				.run()) {
+			baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+			createAccounts();
+
+			ExecutorService executor = Executors.newFixedThreadPool(config.clients());
+			ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+			ThreadCounts threads = new ThreadCounts();
+			List<Future<Client>> clients = new ArrayList<>();
+			long measureFrom = System.nanoTime() + config.warmup().toNanos();
+			long stopAt = measureFrom + config.duration().toNanos();
+			try {
+				for (int i = 0; i < config.clients(); i++) {
+					Client client = new Client(i % OWNERS.length);
+					clients.add(executor.submit(() -> client.run(measureFrom, stopAt)));
+				}
+				sampler.scheduleAtFixedRate(threads::sample, config.warmup().toMillis(), 100, TimeUnit.MILLISECONDS);
+				Report report = new Report(config);
+				for (Future<Client> client : clients) {
+					report.add(client.get());
+				}
+				sampler.shutdownNow();
+				report.threads = threads;
+				report.check(accounts, this::balanceOf);
+				return report;
+			} finally {
+				sampler.shutdownNow();
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private void createAccounts() throws IOException, InterruptedException {
+		accounts = new Account[OWNERS.length * config.accountsPerOwner()];
+		for (int i = 0; i < accounts.length; i++) {
+			int owner = i % OWNERS.length;
+			String body = "{\"amount\": " + Money.toDecimal(config.initialBalance()).toPlainString()
+					+ ", \"accountType\": \"SAVINGS\", \"owner\": \"" + OWNERS[owner][0] + "\"}";
+			HttpResponse<String> response = send(owner, "POST", "/bankaccounts", body);
+			if (response.statusCode() != 201) {
+				throw new IllegalStateException("Could not create an account: " + response.statusCode());
+			}
+			String location = response.headers().firstValue("Location").orElseThrow();
+			accounts[i] = new Account(Long.parseLong(location.substring(location.lastIndexOf('/') + 1)), owner,
+					config.initialBalance());
+		}
+	}
+
+	private long balanceOf(Account account) {
+		try {
+			HttpResponse<String> response = send(account.owner(), "GET", "/bankaccounts/" + account.id(), null);
+			if (response.statusCode() != 200) {
+				throw new IllegalStateException("Could not read account " + account.id() + ": " + response.statusCode());
+			}
+			return MAPPER.readValue(response.body(), BankAccount.class).amount();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private HttpResponse<String> send(int owner, String method, String path, String body)
+			throws IOException, InterruptedException {
+		String credentials = OWNERS[owner][0] + ":" + OWNERS[owner][1];
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+				.timeout(Duration.ofSeconds(30))
+				.header("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+		if (body == null) {
+			request.method(method, HttpRequest.BodyPublishers.noBody());
+		} else {
+			request.header("Content-Type", "application/json").method(method, HttpRequest.BodyPublishers.ofString(body));
+		}
+		return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private record Account(long id, int owner, long initialBalance) {
+	}
+
+	/**
+	 * One simulated user. Only touched by its own thread until {@link #run} returns.
+	 */
+	private final class Client {
+		private final int owner;
+		private final int[] ownAccounts;
+		private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+		private final long[] deltas = new long[accounts.length];
+		private final Operation[] wheel;
+		private long measured;
+		private long errors;
+
+		Client(int owner) {
+			this.owner = owner;
+			this.ownAccounts = IntStream.range(0, accounts.length)
+					.filter(i -> accounts[i].owner() == owner).toArray();
+			List<Operation> operations = new ArrayList<>();
+			config.mix().forEach((operation, weight) -> {
+				for (int i = 0; i < weight; i++) {
+					operations.add(operation);
+				}
+			});
+			this.wheel = operations.toArray(Operation[]::new);
+			for (Operation operation : Operation.values()) {
+				latencies.put(operation, newHistogram());
+			}
+		}
+
+		Client run(long measureFrom, long stopAt) {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long now;
+			while ((now = System.nanoTime()) < stopAt) {
+				Operation operation = wheel[random.nextInt(wheel.length)];
+				boolean ok;
+				try {
+					ok = perform(operation, random);
+				} catch (IOException e) {
+					ok = false;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				long end = System.nanoTime();
+				if (!ok) {
+					errors++;
+				}
+				if (now >= measureFrom) {
+					latencies.get(operation).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(end - now)));
+					measured++;
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * @return {@code false} when the outcome is unexpected, and therefore unknown to the bookkeeping
+		 */
+		private boolean perform(Operation operation, ThreadLocalRandom random) throws IOException, InterruptedException {
+			int source = ownAccounts[random.nextInt(ownAccounts.length)];
+			long amount = random.nextLong(1, config.maxAmount() + 1);
+			String decimal = Money.toDecimal(amount).toPlainString();
+			switch (operation) {
+			case READ:
+				return send(owner, "GET", "/bankaccounts/" + accounts[source].id(), null).statusCode() == 200;
+			case DEPOSIT: {
+				// Anybody may deposit into any account
+				int target = random.nextInt(accounts.length);
+				int status = send(owner, "PATCH", "/bankaccounts/" + accounts[target].id() + "/deposit",
+						"{\"amount\": " + decimal + "}").statusCode();
+				if (status == 200) {
+					deltas[target] += amount;
+				}
+				return status == 200;
+			}
+			case WITHDRAWAL: {
+				int status = send(owner, "PATCH", "/bankaccounts/" + accounts[source].id() + "/withdrawal",
+						"{\"amount\": " + decimal + "}").statusCode();
+				if (status == 200) {
+					deltas[source] -= amount;
+				}
+				// 400 means not enough money, which is a legitimate answer under contention
+				return status == 200 || status == 400;
+			}
+			case TRANSFER: {
+				int target = random.nextInt(accounts.length - 1);
+				target = target >= source ? target + 1 : target;
+				int status = send(owner, "PATCH", "/bankaccounts/" + accounts[source].id() + "/tranference",
+						"{\"destinationId\": " + accounts[target].id() + ", \"amount\": " + decimal + "}").statusCode();
+				if (status == 200) {
+					deltas[source] -= amount;
+					deltas[target] += amount;
+				}
+				return status == 200 || status == 400;
+			}
+			default:
+				throw new IllegalArgumentException(operation.name());
+			}
+		}
+	}
+
+	/**
+	 * Peak number of live threads seen while measuring: those serving requests, recognised by
+	 * name, and the whole JVM, which includes the clients of this harness.
+	 */
+	static final class ThreadCounts {
+		private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		private volatile int peakServer;
+		private volatile int peakJvm;
+
+		private void sample() {
+			int server = 0;
+			for (ThreadInfo thread : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+				if (thread != null && Stream.of(SERVER_THREAD_PREFIXES).anyMatch(thread.getThreadName()::startsWith)) {
+					server++;
+				}
+			}
+			peakServer = Math.max(peakServer, server);
+			peakJvm = Math.max(peakJvm, threadMXBean.getThreadCount());
+		}
+
+		int peakServer() {
+			return peakServer;
+		}
+
+		int peakJvm() {
+			return peakJvm;
+		}
+	}
+
+	private static Histogram newHistogram() {
+		// Microseconds, up to a minute, three significant digits
+		return new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+	}
+
+	/**
+	 * Merged outcome of a run: latencies, throughput and any broken invariant.
+	 */
+	static final class Report {
+		private final Config config;
+		private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+		private final List<String> violations = new ArrayList<>();
+		private long[] deltas;
+		private long operations;
+		private long errors;
+		private ThreadCounts threads = new ThreadCounts();
+
+		Report(Config config) {
+			this.config = config;
+			for (Operation operation : Operation.values()) {
+				latencies.put(operation, newHistogram());
+			}
+		}
+
+		private void add(Client client) {
+			client.latencies.forEach((operation, histogram) -> latencies.get(operation).add(histogram));
+			if (deltas == null) {
+				deltas = new long[client.deltas.length];
+			}
+			for (int i = 0; i < deltas.length; i++) {
+				deltas[i] += client.deltas[i];
+			}
+			operations += client.measured;
+			errors += client.errors;
+		}
+
+		private void check(Account[] accounts, ToLongFunction<Account> balanceOf) {
+			if (errors > 0) {
+				violations.add(errors + " requests failed or had an unknown outcome, the books cannot be checked exactly");
+			}
+			long expectedTotal = 0;
+			long actualTotal = 0;
+			for (int i = 0; i < accounts.length; i++) {
+				long expected = accounts[i].initialBalance() + deltas[i];
+				long actual = balanceOf.applyAsLong(accounts[i]);
+				expectedTotal += expected;
+				actualTotal += actual;
+				if (actual < 0) {
+					violations.add("Account " + accounts[i].id() + " has a negative balance: " + actual);
+				}
+				if (actual != expected) {
+					violations.add("Account " + accounts[i].id() + " holds " + actual + " cents, expected " + expected
+							+ " from the acknowledged operations (lost update)");
+				}
+			}
+			if (actualTotal != expectedTotal) {
+				violations.add("Total is " + actualTotal + " cents, expected " + expectedTotal + " (money not conserved)");
+			}
+		}
+
+		List<String> violations() {
+			return violations;
+		}
+
+		double throughput() {
+			return operations / (config.duration().toNanos() / 1e9);
+		}
+
+		/**
+		 * @return the given percentile over all operations, in milliseconds
+		 */
+		double percentileMillis(double percentile) {
+			Histogram all = newHistogram();
+			latencies.values().forEach(all::add);
+			return all.getValueAtPercentile(percentile) / 1000.0;
+		}
+
+		ThreadCounts threads() {
+			return threads;
+		}
+
+		void print(PrintStream out) {
+			out.printf("%d clients, %s, %.0f ops/s, %d errors, peak threads %d serving / %d in the JVM%n", config.clients(),
+					config.duration(), throughput(), errors, threads.peakServer(), threads.peakJvm());
+			out.printf("%-11s %9s %9s %9s %9s %9s%n", "operation", "count", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+			latencies.forEach((operation, histogram) -> out.printf("%-11s %9d %9.2f %9.2f %9.2f %9.2f%n", operation,
+					histogram.getTotalCount(), histogram.getValueAtPercentile(50) / 1000.0,
+					histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+					histogram.getMaxValue() / 1000.0));
+			violations.forEach(v -> out.println("VIOLATION: " + v));
+		}
+
+		/**
+		 * Writes one {@code .hgrm} percentile distribution per operation, in milliseconds, which
+		 * HdrHistogram's plotter and other tools can compare across runs.
+		 */
+		void writeHistograms(Path directory) throws IOException {
+			Files.createDirectories(directory);
+			for (Map.Entry<Operation, Histogram> entry : latencies.entrySet()) {
+				try (PrintStream out = new PrintStream(
+						Files.newOutputStream(directory.resolve(entry.getKey().name().toLowerCase() + ".hgrm")))) {
+					entry.getValue().outputPercentileDistribution(out, 1000.0);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Regression gate for throughput and correctness under contention, run with
+ * {@code ./gradlew loadTest}. Every {@code -Pload.*} property is passed to
+ * {@link LoadTestHarness.Config}; {@code load.min-throughput} (ops/s) and
+ * {@code load.max-p99-ms} turn on the performance thresholds.
+ * <p>
+ * {@code stacksShouldKeepTheBooksBalancedAtHighConcurrency} runs the same mix against the servlet
+ * and the reactive stack with {@code load.compare-clients} clients (256 by default) and prints
+ * their throughput, p99 and peak thread counts side by side.
+ */
+@Tag("load")
+class LoadTests {
+
+	@Test
+	void mixedLoadShouldKeepTheBooksBalanced() throws Exception {
+		LoadTestHarness.Report report = new LoadTestHarness(LoadTestHarness.Config.fromSystemProperties()).run();
+		report.print(System.out);
+		report.writeHistograms(Path.of("build", "reports", "load"));
+
+		assertThat(report.violations()).isEmpty();
+		double minThroughput = Double.parseDouble(System.getProperty("load.min-throughput", "0"));
+		assertThat(report.throughput()).isGreaterThanOrEqualTo(minThroughput);
+		double maxP99 = Double.parseDouble(System.getProperty("load.max-p99-ms", "0"));
+		if (maxP99 > 0) {
+			assertThat(report.percentileMillis(99)).isLessThanOrEqualTo(maxP99);
+		}
+	}
+
+	@Test
+	void stacksShouldKeepTheBooksBalancedAtHighConcurrency() throws Exception {
+		LoadTestHarness.Config config = LoadTestHarness.Config.fromSystemProperties();
+		int clients = Integer.getInteger("load.compare-clients", 256);
+		LoadTestHarness.Report servlet = new LoadTestHarness(config.with(clients)).run();
+		LoadTestHarness.Report reactive = new LoadTestHarness(config.with(clients, "spring.profiles.active=reactive",
+				"spring.datasource.url=jdbc:h2:mem:load-reactive;DB_CLOSE_DELAY=-1",
+				"spring.r2dbc.url=r2dbc:h2:mem:///load-reactive")).run();
+
+		System.out.printf("%-9s %8s %10s %9s %16s %12s%n", "stack", "clients", "ops/s", "p99 ms", "serving threads",
+				"JVM threads");
+		printRow("servlet", clients, servlet);
+		printRow("reactive", clients, reactive);
+
+		assertThat(servlet.violations()).isEmpty();
+		assertThat(reactive.violations()).isEmpty();
+	}
+
+	private static void printRow(String stack, int clients, LoadTestHarness.Report report) {
+		System.out.printf("%-9s %8d %10.0f %9.1f %16d %12d%n", stack, clients, report.throughput(),
+				report.percentileMillis(99), report.threads().peakServer(), report.threads().peakJvm());
+	}
+}
@@ -0,0 +1,56 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+// Tests otherwise run with a plain in-memory registry and no Prometheus endpoint
+@AutoConfigureObservability(tracing = false)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MetricsTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Test
+	void prometheusShouldExposeEndpointRepositoryAuthenticationAndLockMetrics() {
+		Long source = bankAccountRepository.save(new BankAccount(null, 10000L, "SAVINGS", "user1")).id();
+		Long destination = bankAccountRepository.save(new BankAccount(null, 0L, "SAVINGS", "user2")).id();
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		TestRestTemplate user1 = restTemplate.withBasicAuth("user1", "user1$$pwd");
+		user1.exchange("/bankaccounts/{id}/deposit", HttpMethod.PATCH, new HttpEntity<>("{\"amount\": 1.00}", headers),
+				String.class, source);
+		user1.exchange("/bankaccounts/{id}/deposit", HttpMethod.PATCH, new HttpEntity<>("{\"amount\": 1.00}", headers),
+				String.class, 999_999L);
+		user1.exchange("/bankaccounts/{id}/tranference", HttpMethod.PATCH,
+				new HttpEntity<>("{\"destinationId\": " + destination + ", \"amount\": 1.00}", headers), String.class, source);
+
+		ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+		assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(scrape.getBody())
+				.contains("http_server_requests_seconds_bucket{")
+				.containsPattern("http_server_requests_seconds_count\\{.*status=\"200\",uri=\"/bankaccounts/\\{requestedId\\}/deposit\"")
+				.containsPattern("http_server_requests_seconds_count\\{.*status=\"404\",uri=\"/bankaccounts/\\{requestedId\\}/deposit\"")
+				.containsPattern("spring_data_repository_invocations_seconds_count\\{.*method=\"addToBalance\"")
+				.containsPattern("bankaccounts_authentication_seconds_count\\{outcome=\"success\"")
+				.contains("bankaccounts_authentication_bcrypt_seconds_bucket{")
+				.containsPattern("bankaccounts_lock_wait_seconds_count\\{path=\"transfer\"")
+				.contains("bankaccounts_transaction_retries_total")
+				.containsPattern("bankaccounts_cache_gets_total\\{cache=\"accounts\",result=\"miss\"");
+	}
+}
@@ -0,0 +1,108 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.capmation.challenge1.BatchOperationRecord.Type;
+import com.capmation.challenge1.OwnerBalanceReconciler.Drift;
+import com.capmation.challenge1.OwnerBalances.OwnerSummary;
+import com.capmation.challenge1.OwnerBalances.TypeSummary;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+
+// Own context, so no other test class writes bank_account behind the aggregates' back
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = "bankaccounts.aggregates.reconcile-interval=1h")
+class OwnerBalancesTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	OwnerBalances ownerBalances;
+
+	@Autowired
+	OwnerBalanceReconciler ownerBalanceReconciler;
+
+	@Autowired
+	TransferService transferService;
+
+	@Autowired
+	BatchOperationService batchOperationService;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	void summaryShouldIncludeAccountsThatExistedOnStartup() {
+		ResponseEntity<String> response = restTemplate
+				.withBasicAuth("user2", "user2$$pwd")
+				.getForEntity("/bankaccounts/summary", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		assertThat(documentContext.read("$.owner", String.class)).isEqualTo("user2");
+		assertThat(documentContext.read("$.accounts", Integer.class)).isEqualTo(1);
+		assertThat(documentContext.read("$.total", Double.class)).isEqualTo(4700.50);
+		assertThat(documentContext.read("$.byAccountType.SAVINGS.total", Double.class)).isEqualTo(4700.50);
+	}
+
+	@Test
+	void everyWritePathShouldMoveTheOwnerTotals() {
+		String owner = "aggregates";
+		Long savings = ownerBalances.save(new BankAccount(null, 10000L, "SAVINGS", owner)).saved().id();
+		Long checking = ownerBalances.save(new BankAccount(null, 0L, "CHECKING", owner)).saved().id();
+		Long other = ownerBalances.save(new BankAccount(null, 0L, "SAVINGS", "aggregates-other")).saved().id();
+
+		ownerBalances.addToBalance(savings, 2500L, null);
+		ownerBalances.subtractFromBalance(savings, owner, 500L, null);
+		transferService.transfer(savings, checking, 3000L, owner, null);
+		transferService.transfer(savings, other, 1000L, owner, null);
+		batchOperationService.apply(List.of(
+				new BatchOperationRecord(Type.DEPOSIT, checking, null, 700L, null),
+				new BatchOperationRecord(Type.TRANSFER, checking, other, 200L, null)), owner, true);
+		// Replacing an account moves it out of its previous owner's totals
+		ownerBalances.save(new BankAccount(other, 50L, "CHECKING", owner));
+
+		OwnerSummary summary = ownerBalances.summary(owner);
+		assertThat(summary.accounts()).isEqualTo(3);
+		assertThat(summary.total()).isEqualTo(sumOfAccounts(owner));
+		assertThat(summary.byAccountType()).containsExactlyInAnyOrderEntriesOf(Map.of(
+				"SAVINGS", new TypeSummary(1, 8000L),
+				"CHECKING", new TypeSummary(2, 3550L)));
+		assertThat(ownerBalances.summary("aggregates-other").accounts()).isZero();
+
+		assertThat(ownerBalanceReconciler.reconcile().drifts())
+				.noneMatch(d -> d.owner().startsWith("aggregates"));
+	}
+
+	@Test
+	void reconciliationShouldReportAndRepairDrift() {
+		String owner = "drifting";
+		ownerBalances.save(new BankAccount(null, 1000L, "SAVINGS", owner));
+		jdbcTemplate.update("UPDATE owner_balance SET total = total + 5 WHERE owner = ?", owner);
+		long driftedBefore = ownerBalanceReconciler.stats().drifted();
+
+		OwnerBalanceReconciler.Report report = ownerBalanceReconciler.reconcile();
+
+		assertThat(report.drifts()).filteredOn(d -> d.owner().equals(owner))
+				.containsExactly(new Drift(owner, "SAVINGS", 1, 1000L, 1, 1005L));
+		assertThat(ownerBalanceReconciler.stats().drifted() - driftedBefore).isEqualTo(report.drifts().size());
+		assertThat(ownerBalances.summary(owner).total()).isEqualTo(1000L);
+		assertThat(ownerBalanceReconciler.lastReport()).isSameAs(report);
+	}
+
+	private long sumOfAccounts(String owner) {
+		return jdbcTemplate.queryForObject("SELECT SUM(amount) FROM bank_account WHERE owner = ?", Long.class, owner);
+	}
+}
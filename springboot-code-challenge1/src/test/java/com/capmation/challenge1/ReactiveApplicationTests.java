@@ -0,0 +1,15 @@
+package com.capmation.challenge1;
+
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Runs every {@link SpringbootCodeChallenge1ApplicationTests} scenario against the reactive
+ * stack. The database gets its own name so it is not shared with other reactive contexts; it is
+ * dropped when a context closes and its last connection goes away.
+ */
+@ActiveProfiles("reactive")
+@TestPropertySource(properties = { "spring.datasource.url=jdbc:h2:mem:reactive-application-tests",
+		"spring.r2dbc.url=r2dbc:h2:mem:///reactive-application-tests" })
+class ReactiveApplicationTests extends SpringbootCodeChallenge1ApplicationTests {
+}
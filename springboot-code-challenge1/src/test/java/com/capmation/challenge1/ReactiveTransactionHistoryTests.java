@@ -0,0 +1,14 @@
+package com.capmation.challenge1;
+
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * {@link TransactionHistoryTests} against the reactive stack, which records the history with
+ * R2DBC in the same transaction as the balance change.
+ */
+@ActiveProfiles("reactive")
+@TestPropertySource(properties = { "spring.datasource.url=jdbc:h2:mem:reactive-transaction-history-tests",
+		"spring.r2dbc.url=r2dbc:h2:mem:///reactive-transaction-history-tests" })
+class ReactiveTransactionHistoryTests extends TransactionHistoryTests {
+}
@@ -0,0 +1,103 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.jayway.jsonpath.JsonPath;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The replica is an embedded database that never sees a write, so a stale read shows which pool
+ * served it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"bankaccounts.replica.enabled=true", "bankaccounts.replica.read-your-writes-window=1s" })
+class ReadReplicaRoutingTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Test
+	void shouldReadFromTheReplicaUnlessThePrincipalJustWrote() throws Exception {
+		// Off the request path everything goes to the primary
+		Long added = bankAccountRepository.save(new BankAccount(null, 100L, "CHECKING", "user2")).id();
+		assertThat(bankAccountRepository.findById(added)).isPresent();
+
+		assertThat(ids(list("user2", "user2$$pwd"))).containsExactly(1004);
+
+		ResponseEntity<Void> deposit = restTemplate.withBasicAuth("user2", "user2$$pwd").exchange(
+				"/bankaccounts/1004/deposit", HttpMethod.PATCH, new HttpEntity<>(new DepositRecord(1004L, 50L, null)),
+				Void.class);
+		assertThat(deposit.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		ResponseEntity<String> afterTheWrite = list("user2", "user2$$pwd");
+		assertThat(ids(afterTheWrite)).containsExactlyInAnyOrder(1004, added.intValue());
+		List<Double> amounts = JsonPath.parse(afterTheWrite.getBody()).read("$[?(@.id == 1004)].amount");
+		assertThat(amounts).containsExactly(4701.0);
+		assertThat(meterRegistry.get("bankaccounts.datasource.read-your-writes").counter().count()).isEqualTo(1);
+
+		Thread.sleep(1100);
+
+		ResponseEntity<String> stale = restTemplate.withBasicAuth("user2", "user2$$pwd").getForEntity("/bankaccounts/1004",
+				String.class);
+		assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(JsonPath.parse(stale.getBody()).read("$.amount", Double.class)).isEqualTo(4700.5);
+	}
+
+	@Test
+	void shouldKeepWritesOnThePrimaryAndReportBothPools() {
+		assertThat(ids(list("user3", "user3$$pwd"))).isEmpty();
+
+		ResponseEntity<Void> created = restTemplate.withBasicAuth("user3", "user3$$pwd").postForEntity("/bankaccounts",
+				new BankAccount(null, 500L, "SAVINGS", "user3"), Void.class);
+		assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+		assertThat(ids(list("user3", "user3$$pwd"))).hasSize(1);
+		assertThat(meterRegistry.get("bankaccounts.datasource.routed").tag("target", "replica").counter().count())
+				.isPositive();
+		assertThat(meterRegistry.get("hikaricp.connections.pending").tag("pool", "primary").gauge()).isNotNull();
+		assertThat(meterRegistry.get("hikaricp.connections.pending").tag("pool", "replica").gauge()).isNotNull();
+	}
+
+	@Test
+	void shouldReadWhatTheApplicationMaintainsFromThePrimary() {
+		// The embedded replica has neither history partitions nor a built owner_balance
+		ResponseEntity<String> history = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForEntity("/bankaccounts/1001/transactions", String.class);
+		assertThat(history.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		ResponseEntity<String> summary = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForEntity("/bankaccounts/summary", String.class);
+		assertThat(summary.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(JsonPath.parse(summary.getBody()).read("$.accounts", Integer.class)).isEqualTo(3);
+		assertThat(JsonPath.parse(summary.getBody()).read("$.total", Double.class)).isEqualTo(2510.0);
+	}
+
+	private ResponseEntity<String> list(String user, String password) {
+		ResponseEntity<String> response = restTemplate.withBasicAuth(user, password).getForEntity("/bankaccounts",
+				String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		return response;
+	}
+
+	private static List<Integer> ids(ResponseEntity<String> response) {
+		return JsonPath.parse(response.getBody()).read("$[*].id");
+	}
+}
@@ -80,10 +80,12 @@ class SpringbootCodeChallenge1ApplicationTests {
     }
     
 	@Test
+	// This and the other tests that save with a fixed id overwrite the accounts the read tests expect
+	@DirtiesContext
 	void shouldCreateANewBankAccount() {
 		// TODO: Create a new bank account using user1 and validate that the new
 		// location created is available
-		BankAccount ba = new BankAccount(1001L, Double.valueOf(200), "SAVINGS", "LMA");
+		BankAccount ba = new BankAccount(1001L, 20000L, "SAVINGS", "LMA");
 		HttpHeaders ht = new HttpHeaders();
 		ht.setContentType(MediaType.APPLICATION_JSON);
 		HttpEntity<BankAccount> he = new HttpEntity<>(ba, ht);
@@ -99,12 +101,13 @@ class SpringbootCodeChallenge1ApplicationTests {
 	}
 
 	@Test
+	@DirtiesContext
 	void shouldDepositMoneyInBankAccount() {
 		// allowMethods("PATCH");
 		// TODO: Do a normal deposit into any bank account and validate expected new
 		// account amount value
 		// 1.- Create Account
-		BankAccount ba = new BankAccount(1001L, Double.valueOf(200), "SAVINGS", "LMA");
+		BankAccount ba = new BankAccount(1001L, 20000L, "SAVINGS", "LMA");
 		HttpHeaders ht = new HttpHeaders();
 		ht.setContentType(MediaType.APPLICATION_JSON);
 		HttpEntity<BankAccount> request = new HttpEntity<>(ba, ht);
@@ -115,7 +118,7 @@ class SpringbootCodeChallenge1ApplicationTests {
 
 		Date fecha = Date.from(LocalDate.now().atStartOfDay().atZone(ZoneId.systemDefault()).toInstant());
 
-		DepositRecord dr = new DepositRecord(1002L, Double.valueOf(300), fecha);
+		DepositRecord dr = new DepositRecord(1002L, 30000L, fecha);
 
 		HttpEntity<DepositRecord> request2 = new HttpEntity<>(dr, ht);
 
@@ -128,11 +131,12 @@ class SpringbootCodeChallenge1ApplicationTests {
 	}
 
 	@Test
+	@DirtiesContext
 	void shouldWithdrawMoneyFromBankAccount() {
 		// TODO: Do a normal withdrawal from one bank account and validate expected new
 		// account amount value
 		// 1.- Create Account
-		BankAccount ba = new BankAccount(1001L, Double.valueOf(500), "SAVINGS", "user1");
+		BankAccount ba = new BankAccount(1001L, 50000L, "SAVINGS", "user1");
 		HttpHeaders ht = new HttpHeaders();
 		ht.setContentType(MediaType.APPLICATION_JSON);
 		HttpEntity<BankAccount> request = new HttpEntity<>(ba, ht);
@@ -143,7 +147,7 @@ class SpringbootCodeChallenge1ApplicationTests {
 
 		Date fecha = Date.from(LocalDate.now().atStartOfDay().atZone(ZoneId.systemDefault()).toInstant());
 
-		WithdrawalRecord wr = new WithdrawalRecord(1002L, Double.valueOf(150), fecha);
+		WithdrawalRecord wr = new WithdrawalRecord(1002L, 15000L, fecha);
 
 		HttpEntity<WithdrawalRecord> request2 = new HttpEntity<>(wr, ht);
 
@@ -156,12 +160,13 @@ class SpringbootCodeChallenge1ApplicationTests {
 	}
 
 	@Test
+	@DirtiesContext
 	void shouldTransferMoneyInBankAccount() {
 		// TODO: Do a normal deposit into any bank account and validate expected new
 		// account amount value
 		
 		// 1.- Create Account Origin
-		BankAccount baSource = new BankAccount(1003L, Double.valueOf(200), "SAVINGS", "LMA");
+		BankAccount baSource = new BankAccount(1003L, 90000L, "SAVINGS", "user1");
 		HttpHeaders ht = new HttpHeaders();
 		ht.setContentType(MediaType.APPLICATION_JSON);
 		HttpEntity<BankAccount> requestSource = new HttpEntity<>(baSource, ht);
@@ -170,7 +175,7 @@ class SpringbootCodeChallenge1ApplicationTests {
 				requestSource, Void.class);
 		
 		// 2.- Create Account Target
-		BankAccount baTarget = new BankAccount(1001L, Double.valueOf(700), "SAVINGS", "LMA");
+		BankAccount baTarget = new BankAccount(1001L, 70000L, "SAVINGS", "LMA");
 		ht.setContentType(MediaType.APPLICATION_JSON);
 		HttpEntity<BankAccount> requestTarget = new HttpEntity<>(baTarget, ht);
 
@@ -181,7 +186,7 @@ class SpringbootCodeChallenge1ApplicationTests {
 
 		Date fecha = Date.from(LocalDate.now().atStartOfDay().atZone(ZoneId.systemDefault()).toInstant());
 
-		TransferenceRecord dr = new TransferenceRecord(baTarget.id(), Double.valueOf(700), fecha);
+		TransferenceRecord dr = new TransferenceRecord(baTarget.id(), 70000L, fecha);
 
 		HttpEntity<TransferenceRecord> request2 = new HttpEntity<>(dr, ht);
 
@@ -190,9 +195,90 @@ class SpringbootCodeChallenge1ApplicationTests {
 
 		assertThat(response2.getStatusCode()).isEqualTo(HttpStatus.OK);
 		
-		// Origin validation
-		assertThat(baSource.amount() + dr.amount() == response2.getBody().amount());
+		// Origin validation: the transferred amount is debited from the origin
+		assertThat(response2.getBody().amount()).isEqualTo(baSource.amount() - dr.amount());
 		
 	}
 
+	@Test
+	void shouldNotTransferMoneyFromAnotherOwnersBankAccount() {
+		Date fecha = Date.from(LocalDate.now().atStartOfDay().atZone(ZoneId.systemDefault()).toInstant());
+		TransferenceRecord dr = new TransferenceRecord(1001L, 100L, fecha);
+		HttpHeaders ht = new HttpHeaders();
+		ht.setContentType(MediaType.APPLICATION_JSON);
+
+		ResponseEntity<BankAccount> response = restTemplate.withBasicAuth("user2", "user2$$pwd").exchange("/bankaccounts/{requestedId}/tranference",
+				HttpMethod.PATCH, new HttpEntity<>(dr, ht), BankAccount.class, 1002L);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	void shouldReportAStatusForEveryBatchOperation() {
+		HttpHeaders ht = new HttpHeaders();
+		ht.setContentType(MediaType.APPLICATION_JSON);
+		String body = """
+				[
+				  {"type": "DEPOSIT", "accountId": 1009, "amount": 10.00},
+				  {"type": "WITHDRAWAL", "accountId": 1004, "amount": 10.00}
+				]
+				""";
+
+		ResponseEntity<String> response = restTemplate.withBasicAuth("user1", "user1$$pwd").postForEntity("/bankaccounts/batch",
+				new HttpEntity<>(body, ht), String.class);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		DocumentContext documentContext = JsonPath.parse(response.getBody());
+		JSONArray statuses = documentContext.read("$..status");
+		assertThat(statuses).containsExactly("NOT_FOUND", "NOT_FOUND");
+	}
+
+	@Test
+	void shouldNotReturnAStaleBalanceAfterADeposit() {
+		HttpHeaders ht = new HttpHeaders();
+		ht.setContentType(MediaType.APPLICATION_JSON);
+		BankAccount ba = new BankAccount(null, 5000L, "CHECKING", "user2");
+		ResponseEntity<Void> created = restTemplate.withBasicAuth("user2", "user2$$pwd").postForEntity("/bankaccounts",
+				new HttpEntity<>(ba, ht), Void.class);
+		String location = created.getHeaders().getLocation().getPath();
+
+		// Warm the cache, then change the balance behind it
+		assertThat(restTemplate.withBasicAuth("user2", "user2$$pwd").getForEntity(location, BankAccount.class).getBody().amount())
+				.isEqualTo(5000L);
+		DepositRecord dr = new DepositRecord(null, 2500L, new Date());
+		restTemplate.withBasicAuth("user2", "user2$$pwd").exchange(location + "/deposit", HttpMethod.PATCH,
+				new HttpEntity<>(dr, ht), BankAccount.class);
+
+		assertThat(restTemplate.withBasicAuth("user2", "user2$$pwd").getForEntity(location, BankAccount.class).getBody().amount())
+				.isEqualTo(7500L);
+	}
+
+	@Test
+	void shouldRejectAmountsThatAreNotWholeCentsOrOutOfRange() {
+		HttpHeaders ht = new HttpHeaders();
+		ht.setContentType(MediaType.APPLICATION_JSON);
+		for (String amount : new String[] { "0.001", "-5.00", "0", "1e30", "\"ten\"" }) {
+			ResponseEntity<String> response = restTemplate.withBasicAuth("user1", "user1$$pwd").exchange(
+					"/bankaccounts/1002/deposit", HttpMethod.PATCH,
+					new HttpEntity<>("{\"amount\": " + amount + "}", ht), String.class);
+			assertThat(response.getStatusCode()).as(amount).isEqualTo(HttpStatus.BAD_REQUEST);
+		}
+	}
+
+	@Test
+	@DirtiesContext
+	void shouldNotOverflowABalance() {
+		HttpHeaders ht = new HttpHeaders();
+		ht.setContentType(MediaType.APPLICATION_JSON);
+		String max = Money.toDecimal(Money.MAX_CENTS).toPlainString();
+		ResponseEntity<Void> created = restTemplate.withBasicAuth("user2", "user2$$pwd").postForEntity("/bankaccounts",
+				new HttpEntity<>("{\"amount\": " + max + ", \"accountType\": \"SAVINGS\", \"owner\": \"user2\"}", ht), Void.class);
+		assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+		ResponseEntity<String> response = restTemplate.withBasicAuth("user2", "user2$$pwd").exchange(
+				created.getHeaders().getLocation().getPath() + "/deposit", HttpMethod.PATCH,
+				new HttpEntity<>("{\"amount\": 0.01}", ht), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
 }
@@ -1,6 +1,7 @@
 package com.capmation.challenge1;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.io.IOException;
 
@@ -10,8 +11,13 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.json.JsonTest;
 import org.springframework.boot.test.json.JacksonTester;
+import org.springframework.context.annotation.Import;
+
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
 
 @JsonTest
+// The shape must be the same with the generated accessors the application uses
+@Import(JacksonConfig.class)
 public class SpringbootCodeChallenge1JsonTests {
 	@Autowired
 	private JacksonTester<BankAccount> json;
@@ -24,10 +30,10 @@ public class SpringbootCodeChallenge1JsonTests {
 	@BeforeEach
     void setUp() {
         bankAccounts = Arrays.array(
-                new BankAccount(1001L, 1000.00, "SAVINGS", "user1"),
-                new BankAccount(1002L, 10.00, "CHECKING", "user1"),
-                new BankAccount(1003L, 1500.00, "SAVINGS", "user1"),
-        		new BankAccount(1004L, 4700.50, "SAVINGS", "user2"));
+                new BankAccount(1001L, 100000L, "SAVINGS", "user1"),
+                new BankAccount(1002L, 1000L, "CHECKING", "user1"),
+                new BankAccount(1003L, 150000L, "SAVINGS", "user1"),
+        		new BankAccount(1004L, 470050L, "SAVINGS", "user2"));
     }
 
     @Test
@@ -59,9 +65,9 @@ public class SpringbootCodeChallenge1JsonTests {
 				}
                 """;
         assertThat(json.parse(expected))
-                .isEqualTo(new BankAccount(1001L, 1000.00, "SAVINGS", "user1"));
+                .isEqualTo(new BankAccount(1001L, 100000L, "SAVINGS", "user1"));
         assertThat(json.parseObject(expected).id()).isEqualTo(1001L);
-        assertThat(json.parseObject(expected).amount()).isEqualTo(1000.00);
+        assertThat(json.parseObject(expected).amount()).isEqualTo(100000L);
         assertThat(json.parseObject(expected).accountType()).isEqualTo("SAVINGS");
         assertThat(json.parseObject(expected).owner()).isEqualTo("user1");
     }
@@ -84,4 +90,18 @@ public class SpringbootCodeChallenge1JsonTests {
                 """;
         assertThat(jsonList.parse(expected)).isEqualTo(bankAccounts);
     }
+
+    @Test
+    void amountsShouldBeReadExactlyAsCents() throws IOException {
+        assertThat(json.parseObject("{\"amount\": 0.1}").amount()).isEqualTo(10L);
+        assertThat(json.parseObject("{\"amount\": \"4700.5\"}").amount()).isEqualTo(470050L);
+        assertThat(json.write(new BankAccount(1L, 5L, "SAVINGS", "user1"))).extractingJsonPathNumberValue("@.amount")
+                .isEqualTo(0.05);
+    }
+
+    @Test
+    void amountsWithFractionsOfACentShouldBeRejected() {
+        assertThatThrownBy(() -> json.parseObject("{\"amount\": 10.001}")).isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> json.parseObject("{\"amount\": 1e300}")).isInstanceOf(InvalidFormatException.class);
+    }
 }
@@ -0,0 +1,153 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.capmation.challenge1.TransactionHistory.Transaction;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class TransactionHistoryTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Autowired
+	TransactionHistory transactionHistory;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	void shouldListEveryOperationOnTheAccountInOrder() {
+		Long source = bankAccountRepository.save(new BankAccount(null, 10000L, "SAVINGS", "user1")).id();
+		Long destination = bankAccountRepository.save(new BankAccount(null, 0L, "CHECKING", "user1")).id();
+		Date dateTime = Date.from(Instant.parse("2023-05-04T10:15:30Z"));
+
+		patch("/bankaccounts/{id}/deposit", new DepositRecord(source, 5000L, dateTime), source);
+		patch("/bankaccounts/{id}/withdrawal", new WithdrawalRecord(source, 2500L, null), source);
+		patch("/bankaccounts/{id}/tranference", new TransferenceRecord(destination, 1000L, null), source);
+
+		ResponseEntity<String> response = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForEntity("/bankaccounts/{id}/transactions", String.class, source);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		DocumentContext history = JsonPath.parse(response.getBody());
+		assertThat(history.read("$.length()", Integer.class)).isEqualTo(3);
+		List<String> types = history.read("$[*].type");
+		List<Double> amounts = history.read("$[*].amount");
+		List<Double> balances = history.read("$[*].balanceAfter");
+		assertThat(types).containsExactly("DEPOSIT", "WITHDRAWAL", "TRANSFER_OUT");
+		assertThat(amounts).containsExactly(50.0, 25.0, 10.0);
+		assertThat(balances).containsExactly(150.0, 125.0, 115.0);
+		assertThat(history.read("$[0].dateTime", String.class)).startsWith("2023-05-04T10:15:30");
+		assertThat(history.read("$[2].counterpartyId", Long.class)).isEqualTo(destination);
+
+		ResponseEntity<String> incoming = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForEntity("/bankaccounts/{id}/transactions", String.class, destination);
+		DocumentContext destinationHistory = JsonPath.parse(incoming.getBody());
+		List<String> destinationTypes = destinationHistory.read("$[*].type");
+		assertThat(destinationTypes).containsExactly("TRANSFER_IN");
+		assertThat(destinationHistory.read("$[0].counterpartyId", Long.class)).isEqualTo(source);
+	}
+
+	@Test
+	void shouldPageAcrossMonthsAndOnlyReturnTheRequestedRange() {
+		Long id = bankAccountRepository.save(new BankAccount(null, 0L, "SAVINGS", "user1")).id();
+		record(id, "2001-01-10T00:00:00Z", "2001-01-31T23:59:59.999Z", "2001-02-01T00:00:00Z",
+				"2001-02-15T12:00:00Z", "2001-03-01T00:00:00Z", "2001-03-02T00:00:00Z");
+		assertThat(transactionHistory.partitions())
+				.contains(YearMonth.of(2001, 1), YearMonth.of(2001, 2), YearMonth.of(2001, 3));
+
+		List<Instant> seen = new ArrayList<>();
+		String cursor = "";
+		int pages = 0;
+		while (cursor != null) {
+			ResponseEntity<Transaction[]> response = restTemplate.withBasicAuth("user1", "user1$$pwd")
+					.getForEntity("/bankaccounts/{id}/transactions?size=4&cursor={cursor}", Transaction[].class, id, cursor);
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+			for (Transaction entry : response.getBody()) {
+				seen.add(entry.recordedAt());
+			}
+			cursor = response.getHeaders().getFirst(BankAccountController.NEXT_CURSOR_HEADER);
+			pages++;
+		}
+		assertThat(pages).isEqualTo(2);
+		assertThat(seen).isSorted().hasSize(6);
+
+		ResponseEntity<Transaction[]> february = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForEntity("/bankaccounts/{id}/transactions?from=2001-02-01T00:00:00Z&to=2001-03-01T00:00:00Z",
+						Transaction[].class, id);
+		assertThat(february.getBody()).extracting(Transaction::recordedAt)
+				.containsExactly(Instant.parse("2001-02-01T00:00:00Z"), Instant.parse("2001-02-15T12:00:00Z"));
+	}
+
+	@Test
+	void shouldDropWholeMonths() {
+		Long id = bankAccountRepository.save(new BankAccount(null, 0L, "SAVINGS", "user1")).id();
+		record(id, "1990-01-15T00:00:00Z", "1990-02-15T00:00:00Z");
+
+		assertThat(transactionHistory.dropPartitionsBefore(YearMonth.of(1990, 2))).containsExactly(YearMonth.of(1990, 1));
+
+		assertThat(transactionHistory.partitions()).doesNotContain(YearMonth.of(1990, 1)).contains(YearMonth.of(1990, 2));
+		assertThat(transactionHistory.find(id, null, null, null, 10)).extracting(Transaction::recordedAt)
+				.containsExactly(Instant.parse("1990-02-15T00:00:00Z"));
+	}
+
+	@Test
+	void shouldNotShowTheHistoryOfSomebodyElsesAccount() {
+		ResponseEntity<String> response = restTemplate.withBasicAuth("user2", "user2$$pwd")
+				.getForEntity("/bankaccounts/1001/transactions", String.class);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	void shouldRejectAnEmptyRangeOrAMalformedCursor() {
+		ResponseEntity<String> emptyRange = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForEntity("/bankaccounts/1001/transactions?from=2001-02-01T00:00:00Z&to=2001-01-01T00:00:00Z",
+						String.class);
+		ResponseEntity<String> malformedCursor = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForEntity("/bankaccounts/1001/transactions?cursor=not-a-cursor", String.class);
+
+		assertThat(emptyRange.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(malformedCursor.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	private void patch(String url, Object body, Long id) {
+		ResponseEntity<BankAccount> response = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.exchange(url, HttpMethod.PATCH, new HttpEntity<>(body), BankAccount.class, id);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	/**
+	 * Deposits of 1 cent recorded at the given times, in months the application never writes to.
+	 */
+	private void record(Long id, String... recordedAt) {
+		List<Transaction> entries = new ArrayList<>();
+		for (int i = 0; i < recordedAt.length; i++) {
+			entries.add(Transaction.deposit(new BankAccount(id, i + 1L, "SAVINGS", "user1"), 1L,
+					Instant.parse(recordedAt[i]), null));
+		}
+		new TransactionTemplate(transactionManager).executeWithoutResult(tx -> transactionHistory.record(entries));
+	}
+}
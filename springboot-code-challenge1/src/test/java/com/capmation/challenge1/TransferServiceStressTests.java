@@ -0,0 +1,86 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.capmation.challenge1.TransferService.TransferResult;
+
+@SpringBootTest
+class TransferServiceStressTests {
+
+	private static final int ACCOUNTS = 8;
+	private static final int THREADS = 16;
+	private static final int TRANSFERS_PER_THREAD = 300;
+
+	@Autowired
+	TransferService transferService;
+
+	@Autowired
+	BankAccountRepository bankAccountRepository;
+
+	@Autowired
+	TransactionRetrier transactionRetrier;
+
+	@Test
+	void concurrentTransfersShouldConserveTotalMoney() throws Exception {
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			ids.add(bankAccountRepository.save(new BankAccount(null, 100000L, "SAVINGS", "stress")).id());
+		}
+		long totalBefore = total(ids);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> workers = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				workers.add(executor.submit(() -> {
+					int completed = 0;
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+						// Few accounts and both directions, so opposite transfers on the same pair are common
+						Long source = ids.get(random.nextInt(ACCOUNTS));
+						Long destination = ids.get(random.nextInt(ACCOUNTS));
+						TransferResult result = transferService.transfer(source, destination,
+								random.nextInt(1, 200) * 100L, "stress", null);
+						if (result.status() == TransferResult.Status.COMPLETED) {
+							completed++;
+						}
+					}
+					return completed;
+				}));
+			}
+			int completed = 0;
+			for (Future<Integer> worker : workers) {
+				completed += worker.get(2, TimeUnit.MINUTES);
+			}
+			assertThat(completed).isPositive();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(total(ids)).isEqualTo(totalBefore);
+		for (Long id : ids) {
+			assertThat(bankAccountRepository.findById(id).orElseThrow().amount()).isGreaterThanOrEqualTo(0L);
+		}
+		assertThat(transactionRetrier.stats().exhausted()).isZero();
+	}
+
+	private long total(List<Long> ids) {
+		long total = 0;
+		for (BankAccount account : bankAccountRepository.findAllById(ids)) {
+			total += account.amount();
+		}
+		return total;
+	}
+}
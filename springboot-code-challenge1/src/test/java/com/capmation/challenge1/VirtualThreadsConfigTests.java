@@ -0,0 +1,34 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+class VirtualThreadsConfigTests {
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_21)
+	void shouldRunEachTaskOnAVirtualThread() throws Exception {
+		ExecutorService executor = VirtualThreadsConfig.newVirtualThreadPerTaskExecutor();
+		try {
+			Object virtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get();
+
+			assertThat(virtual).isEqualTo(true);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	@EnabledForJreRange(max = JRE.JAVA_20)
+	void shouldRefuseToStartBeforeJava21() {
+		assertThatThrownBy(VirtualThreadsConfig::newVirtualThreadPerTaskExecutor)
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Java 21");
+	}
+}
@@ -0,0 +1,52 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import jakarta.servlet.Filter;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "bankaccounts.virtual-threads.enabled=true")
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadsRequestTests {
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	@Autowired
+	HandlingThread handlingThread;
+
+	@Test
+	void shouldHandleRequestsOnVirtualThreads() throws Exception {
+		ResponseEntity<String> response = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForEntity("/bankaccounts/1001", String.class);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(Thread.class.getMethod("isVirtual").invoke(handlingThread.last.get())).isEqualTo(true);
+	}
+
+	@TestConfiguration
+	static class HandlingThread {
+
+		final AtomicReference<Thread> last = new AtomicReference<>();
+
+		@Bean
+		Filter recordHandlingThread() {
+			return (request, response, chain) -> {
+				last.set(Thread.currentThread());
+				chain.doFilter(request, response);
+			};
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.capmation.challenge1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class WireFormatTests {
+
+	static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+	@Autowired
+	TestRestTemplate restTemplate;
+
+	private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+	private final ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+	@Test
+	void shouldReturnTheSameAccountsAsCborAsAsJson() throws Exception {
+		BankAccount[] json = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForObject("/bankaccounts?sort=id", BankAccount[].class);
+
+		ResponseEntity<byte[]> response = get("/bankaccounts?sort=id", MediaType.APPLICATION_CBOR);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+		assertThat(cbor.readValue(response.getBody(), BankAccount[].class)).containsExactly(json);
+	}
+
+	@Test
+	void shouldAcceptAndReturnSmile() throws Exception {
+		long before = restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.getForObject("/bankaccounts/1002", BankAccount.class).amount();
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(SMILE);
+		headers.setAccept(List.of(SMILE));
+		byte[] deposit = smile.writeValueAsBytes(Map.of("amount", 1.25, "dateTime", new Date()));
+
+		ResponseEntity<byte[]> response = restTemplate.withBasicAuth("user1", "user1$$pwd").exchange(
+				"/bankaccounts/1002/deposit", HttpMethod.PATCH, new HttpEntity<>(deposit, headers), byte[].class);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getContentType()).isEqualTo(SMILE);
+		BankAccount account = smile.readValue(response.getBody(), BankAccount.class);
+		assertThat(account.id()).isEqualTo(1002L);
+		assertThat(account.amount()).isEqualTo(before + 125L);
+	}
+
+	private ResponseEntity<byte[]> get(String url, MediaType accept) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(List.of(accept));
+		return restTemplate.withBasicAuth("user1", "user1$$pwd")
+				.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+	}
+}
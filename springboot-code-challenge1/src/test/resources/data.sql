@@ -1,4 +1,7 @@
-INSERT INTO BANK_ACCOUNT(ID, AMOUNT, ACCOUNT_TYPE, OWNER) VALUES (1001, 1000.00, 'SAVINGS', 'user1');
-INSERT INTO BANK_ACCOUNT(ID, AMOUNT, ACCOUNT_TYPE, OWNER) VALUES (1002, 10.00, 'CHECKING','user1');
-INSERT INTO BANK_ACCOUNT(ID, AMOUNT, ACCOUNT_TYPE, OWNER) VALUES (1003, 1500.00, 'SAVINGS','user1');
-INSERT INTO BANK_ACCOUNT(ID, AMOUNT, ACCOUNT_TYPE, OWNER) VALUES (1004, 4700.50, 'SAVINGS','user2');
+INSERT INTO BANK_ACCOUNT(ID, AMOUNT, ACCOUNT_TYPE, OWNER) VALUES (1001, 100000, 'SAVINGS', 'user1');
+INSERT INTO BANK_ACCOUNT(ID, AMOUNT, ACCOUNT_TYPE, OWNER) VALUES (1002, 1000, 'CHECKING','user1');
+INSERT INTO BANK_ACCOUNT(ID, AMOUNT, ACCOUNT_TYPE, OWNER) VALUES (1003, 150000, 'SAVINGS','user1');
+INSERT INTO BANK_ACCOUNT(ID, AMOUNT, ACCOUNT_TYPE, OWNER) VALUES (1004, 470050, 'SAVINGS','user2');
+
+-- Generated ids continue after the fixed ones above instead of running into them
+ALTER TABLE BANK_ACCOUNT ALTER COLUMN ID RESTART WITH 1005;
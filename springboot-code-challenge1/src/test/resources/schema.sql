@@ -1,7 +1,29 @@
 CREATE TABLE bank_account
 (
     ID          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    AMOUNT      NUMBER NOT NULL DEFAULT 0,
+    AMOUNT      BIGINT NOT NULL DEFAULT 0,
     ACCOUNT_TYPE VARCHAR(10) NOT NULL DEFAULT 'SAVINGS',
     OWNER    VARCHAR(256) NOT NULL
-);
\ No newline at end of file
+);
+
+CREATE INDEX bank_account_owner_amount_id ON bank_account (OWNER, AMOUNT, ID);
+
+-- Accounts and total balance per owner and account type, maintained by OwnerBalances
+CREATE TABLE owner_balance
+(
+    OWNER        VARCHAR(256) NOT NULL,
+    ACCOUNT_TYPE VARCHAR(10) NOT NULL,
+    ACCOUNTS     BIGINT NOT NULL DEFAULT 0,
+    TOTAL        BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (OWNER, ACCOUNT_TYPE)
+);
+
+CREATE TABLE ledger_checkpoint
+(
+    ID  INT PRIMARY KEY,
+    SEQ BIGINT NOT NULL
+);
+
+-- Ids of the transaction history entries; the monthly account_transaction_YYYYMM tables are
+-- created by TransactionHistory
+CREATE SEQUENCE account_transaction_seq;